@@ -0,0 +1,104 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.CourseSnapshot;
+import com.jakobcornell.gradecalculator.model.CategorySnapshot;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Writers editing their own categories of one shared course while readers grade it. Vary the
+ * writer count with -tg, e.g. -tg 1,1 then -tg 2,1, -tg 4,1, -tg 8,1, and compare the edits group
+ * throughput; with writers in different categories it should scale close to linearly. The
+ * snapshots group does the same with the reader going through lock-free snapshots instead, which
+ * the writers then have to publish.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmark {
+	@Param({"64"})
+	public int categories;
+
+	@Param({"1000"})
+	public int assignments;
+
+	protected Course course;
+	protected Category[] all;
+	protected final AtomicInteger writers = new AtomicInteger();
+
+	@Setup
+	public void setup() {
+		course = Fixtures.course(1, categories, assignments, false, 0);
+		all = course.categories.values().toArray(new Category[0]);
+	}
+
+	@State(Scope.Thread)
+	public static class Writer {
+		protected Assignment[] assignments;
+
+		@Setup
+		public void setup(ConcurrencyBenchmark shared) {
+			Category category = shared.all[shared.writers.getAndIncrement() % shared.all.length];
+			assignments = category.assignments.values().toArray(new Assignment[0]);
+		}
+	}
+
+	@Benchmark
+	@Group("edits")
+	@GroupThreads(4)
+	public void edit(Writer writer) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Assignment assignment = writer.assignments[random.nextInt(writer.assignments.length)];
+		assignment.setEarned(random.nextDouble() * assignment.getPossible());
+	}
+
+	@Benchmark
+	@Group("edits")
+	@GroupThreads(1)
+	public double grade() throws ScoringException {
+		return course.score();
+	}
+
+	@Benchmark
+	@Group("snapshots")
+	@GroupThreads(4)
+	public void snapshotEdit(Writer writer) {
+		edit(writer);
+	}
+
+	// grades and lists the categories from one version, as a report would
+	@Benchmark
+	@Group("snapshots")
+	@GroupThreads(1)
+	public double snapshotGrade() throws ScoringException {
+		CourseSnapshot snapshot = course.snapshot();
+		double weight = 0;
+		for (CategorySnapshot category : snapshot.categories.values()) {
+			weight += category.weight;
+		}
+		return snapshot.score() + weight;
+	}
+}
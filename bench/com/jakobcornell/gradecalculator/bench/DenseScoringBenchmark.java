@@ -0,0 +1,74 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.DenseCategory;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Scanning a whole category: walking its assignment objects, as Category does when it can't use its
+ * running sums, against DenseCategory's columns with each kernel. Every parameter combination runs
+ * in its own fork, so the kernel is chosen in setup, before DenseCategory is first loaded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DenseScoringBenchmark {
+	@Param({"1000", "100000"})
+	public int assignments;
+
+	@Param({"true", "false"})
+	public boolean useWeights;
+
+	@Param({"vector", "scalar"})
+	public String kernel;
+
+	protected Category category;
+	protected DenseCategory dense;
+
+	@Setup
+	public void setup() {
+		System.setProperty("gradecalculator.scalar", Boolean.toString(kernel.equals("scalar")));
+		category = Fixtures.course(1, 1, assignments, useWeights, 0).categories.values().iterator().next();
+		dense = new DenseCategory(category);
+		if (DenseCategory.isVectorized() != kernel.equals("vector")) {
+			throw new IllegalStateException(String.format("The %s kernel isn't available", kernel));
+		}
+	}
+
+	@Benchmark
+	public double walk() {
+		double earned = 0, possible = 0, totalWeight = 0, weightedScore = 0;
+		synchronized (category) {
+			for (Assignment assignment : category.assignments.values()) {
+				earned += assignment.getEarned();
+				possible += assignment.getPossible();
+				totalWeight += assignment.getWeight();
+				weightedScore += assignment.getWeight() * (assignment.getEarned() / assignment.getPossible());
+			}
+		}
+		return useWeights ? weightedScore / totalWeight : earned / possible;
+	}
+
+	@Benchmark
+	public double dense() throws ScoringException {
+		return dense.score();
+	}
+}
@@ -0,0 +1,57 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+
+import java.util.Random;
+import java.util.UUID;
+
+// seeded course builder shared by the benchmarks
+class Fixtures {
+	protected static final String[] CATEGORY_NAMES = {"homework", "quizzes", "labs", "projects", "midterms", "final", "participation"};
+
+	static Course course(long seed, int categories, int assignments, boolean useWeights, double unscorableRate) {
+		Random random = new Random(seed);
+		Course course = new Course("benchmark", categories);
+		for (int i = 0; i < categories; i += 1) {
+			boolean unscorable = random.nextDouble() < unscorableRate;
+			Category category = new Category(id(random), "category " + i, 1 + random.nextInt(10), useWeights, assignments);
+			for (int j = 0; j < assignments; j += 1) {
+				double possible = unscorable ? 0 : 1 + random.nextInt(100);
+				Assignment assignment = new Assignment(id(random), "assignment " + j, 1 + random.nextInt(5), random.nextDouble() * possible, possible);
+				category.assignments.put(assignment.id, assignment);
+			}
+			course.categories.put(category.id, category);
+		}
+		return course;
+	}
+
+	/*
+	 * A course with a mix of categories: each uses weights with probability useWeightsRate, and each
+	 * assignment has 0 possible points with probability unscorableRate, which leaves a category that
+	 * uses weights unscorable. Names and scores vary as in a real gradebook, and the same seed always
+	 * gives the same course, ids included.
+	 */
+	static Course gradebook(long seed, int categories, int assignments, double useWeightsRate, double unscorableRate) {
+		Random random = new Random(seed);
+		Course course = new Course("gradebook " + seed, categories);
+		for (int i = 0; i < categories; i += 1) {
+			boolean useWeights = random.nextDouble() < useWeightsRate;
+			Category category = new Category(id(random), CATEGORY_NAMES[i % CATEGORY_NAMES.length] + " " + (i / CATEGORY_NAMES.length + 1), 1 + random.nextInt(10), useWeights, assignments);
+			for (int j = 0; j < assignments; j += 1) {
+				double possible = random.nextDouble() < unscorableRate ? 0 : 5 * (1 + random.nextInt(20));
+				// scores cluster high, as they do in practice
+				double earned = Math.rint(possible * Math.min(1, Math.max(0, 0.8 + 0.15 * random.nextGaussian())));
+				Assignment assignment = new Assignment(id(random), category.getName() + " assignment " + (j + 1), 1 + random.nextInt(5), earned, possible);
+				category.assignments.put(assignment.id, assignment);
+			}
+			course.categories.put(category.id, category);
+		}
+		return course;
+	}
+
+	static UUID id(Random random) {
+		return new UUID(random.nextLong(), random.nextLong());
+	}
+}
@@ -0,0 +1,58 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/*
+ * Heap retained per assignment by a course built as in the benchmarks: the heap in use after a
+ * full collection with the course reachable, less the heap in use before it was built. Run with a
+ * heap large enough for the course and little else going on in the JVM.
+ *
+ *   Footprint [-c categories] [-a assignments per category] [-w]
+ */
+public class Footprint {
+	public static void main(String[] args) {
+		int categories = 100, assignments = 10_000;
+		boolean useWeights = false;
+		try {
+			for (int i = 0; i < args.length; i += 1) {
+				if (args[i].equals("-c") && i + 1 < args.length) {
+					categories = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-a") && i + 1 < args.length) {
+					assignments = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-w")) {
+					useWeights = true;
+				} else {
+					categories = -1;
+				}
+			}
+		} catch (NumberFormatException e) {
+			categories = -1;
+		}
+		if (categories <= 0 || assignments <= 0) {
+			System.err.println("Usage: Footprint [-c categories] [-a assignments per category] [-w]");
+			return;
+		}
+
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long before = used(memory);
+		Course course = Fixtures.course(1, categories, assignments, useWeights, 0);
+		long after = used(memory);
+		long total = (long) categories * assignments;
+		System.out.println(String.format("assignments  %d", total));
+		System.out.println(String.format("heap         %.1f MiB", (after - before) / (double) (1 << 20)));
+		System.out.println(String.format("per          %.1f bytes", (after - before) / (double) total));
+		if (course.categories.size() != categories) {
+			throw new AssertionError();
+		}
+	}
+
+	protected static long used(MemoryMXBean memory) {
+		for (int i = 0; i < 3; i += 1) {
+			memory.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,114 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.storage.BinaryFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Writes a seeded course file built by Fixtures.gradebook, and optionally a command stream in the
+ * batch format that opens it and then runs a seeded mix of lookups, edits, scoring, queries and
+ * saves against it, for Replay. The same options always give the same files.
+ *
+ *   GradebookGenerator [-s seed] [-c categories] [-a assignments per category]
+ *       [-w uses-weights rate] [-u unscorable rate] [-n commands] <course file> [<commands file>]
+ *
+ * Saves go to <course file>.saved, leaving the course file as generated.
+ */
+public class GradebookGenerator {
+	// percentages of the command mix, in the order they're drawn
+	protected static final int LOOKUPS = 40, EDITS = 30, GRADES = 15, QUERIES = 9, CATEGORY_INFOS = 5, SAVES = 1;
+
+	public static void main(String[] args) throws IOException {
+		long seed = 1;
+		int categories = 10, assignments = 100, commands = 10_000;
+		double useWeightsRate = 0.5, unscorableRate = 0.001;
+		List<String> files = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i += 1) {
+				if (args[i].equals("-s") && i + 1 < args.length) {
+					seed = Long.parseLong(args[i += 1]);
+				} else if (args[i].equals("-c") && i + 1 < args.length) {
+					categories = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-a") && i + 1 < args.length) {
+					assignments = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-w") && i + 1 < args.length) {
+					useWeightsRate = Double.parseDouble(args[i += 1]);
+				} else if (args[i].equals("-u") && i + 1 < args.length) {
+					unscorableRate = Double.parseDouble(args[i += 1]);
+				} else if (args[i].equals("-n") && i + 1 < args.length) {
+					commands = Integer.parseInt(args[i += 1]);
+				} else {
+					files.add(args[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			files.clear();
+		}
+		if (files.isEmpty() || files.size() > 2 || categories <= 0 || assignments <= 0 || commands < 0) {
+			System.err.println(
+				"Usage: GradebookGenerator [-s seed] [-c categories] [-a assignments per category]\n" +
+				"\t[-w uses-weights rate] [-u unscorable rate] [-n commands] <course file> [<commands file>]"
+			);
+			return;
+		}
+
+		Path path = Paths.get(files.get(0));
+		Course course = Fixtures.gradebook(seed, categories, assignments, useWeightsRate, unscorableRate);
+		BinaryFormat.write(course, path);
+		if (files.size() == 2) {
+			try (
+				Writer out = Files.newBufferedWriter(Paths.get(files.get(1)), StandardCharsets.UTF_8);
+			) {
+				out.write(String.format("# %d commands, seed %d, against %d categories of %d assignments\n", commands, seed, categories, assignments));
+				write(course, path, new Random(seed), commands, out);
+			}
+		}
+	}
+
+	protected static void write(Course course, Path path, Random random, int commands, Writer out) throws IOException {
+		Category[] categories = course.categories.values().toArray(new Category[0]);
+		Assignment[][] assignments = new Assignment[categories.length][];
+		for (int i = 0; i < categories.length; i += 1) {
+			assignments[i] = categories[i].assignments.values().toArray(new Assignment[0]);
+		}
+		String saved = quote(path.toString() + ".saved");
+
+		out.write(String.format("open %s\n", quote(path.toString())));
+		for (int i = 0; i < commands; i += 1) {
+			int c = random.nextInt(categories.length);
+			Category category = categories[c];
+			Assignment assignment = assignments[c][random.nextInt(assignments[c].length)];
+			int draw = random.nextInt(100);
+			if (draw < LOOKUPS) {
+				out.write(String.format("assignment-info %s %s\n", category.id, assignment.id));
+			} else if (draw < LOOKUPS + EDITS) {
+				double earned = Math.rint(assignment.getPossible() * random.nextDouble());
+				out.write(String.format("update-assignment %s %s earned %s\n", category.id, assignment.id, earned));
+			} else if (draw < LOOKUPS + EDITS + GRADES) {
+				out.write("grade\n");
+			} else if (draw < LOOKUPS + EDITS + GRADES + QUERIES) {
+				out.write(random.nextBoolean() ? "query order lost desc limit 10\n" : String.format("query in %s where score < 0.6 order score limit 10\n", category.id));
+			} else if (draw < LOOKUPS + EDITS + GRADES + QUERIES + CATEGORY_INFOS) {
+				out.write(String.format("category-info %s\n", category.id));
+			} else {
+				out.write(String.format("save %s\n", saved));
+			}
+		}
+	}
+
+	// an argument as the batch format reads it back
+	protected static String quote(String argument) {
+		return "\"" + argument.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
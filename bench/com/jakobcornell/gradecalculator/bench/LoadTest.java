@@ -0,0 +1,106 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/*
+ * Load generator for a running GradingServer: each client thread sends requests to the URL back
+ * to back for the duration, then latency percentiles and throughput are reported over all of them.
+ * Requests are GETs, or POSTs of the -b body.
+ *
+ *   LoadTest [-c clients] [-d seconds] [-b body] <url>
+ */
+public class LoadTest {
+	public static void main(String[] args) throws InterruptedException {
+		int clients = 16, seconds = 10;
+		String body = null, url = null;
+		try {
+			for (int i = 0; i < args.length; i += 1) {
+				if (args[i].equals("-c") && i + 1 < args.length) {
+					clients = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-d") && i + 1 < args.length) {
+					seconds = Integer.parseInt(args[i += 1]);
+				} else if (args[i].equals("-b") && i + 1 < args.length) {
+					body = args[i += 1];
+				} else {
+					url = args[i];
+				}
+			}
+		} catch (NumberFormatException e) {
+			url = null;
+		}
+		if (url == null || clients <= 0 || seconds <= 0) {
+			System.err.println("Usage: LoadTest [-c clients] [-d seconds] [-b body] <url>");
+			return;
+		}
+
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+		HttpRequest request = body == null
+			? HttpRequest.newBuilder(URI.create(url)).GET().build()
+			: HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		AtomicLong failures = new AtomicLong();
+		List<long[]> latencies = new ArrayList<long[]>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < clients; i += 1) {
+			long[][] samples = {new long[1 << 12]};
+			Thread thread = new Thread(() -> {
+				int count = 0;
+				while (System.nanoTime() < deadline) {
+					long start = System.nanoTime();
+					try {
+						HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+						if (response.statusCode() != 200) {
+							failures.incrementAndGet();
+						}
+					} catch (IOException e) {
+						failures.incrementAndGet();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (count == samples[0].length) {
+						samples[0] = Arrays.copyOf(samples[0], count * 2);
+					}
+					samples[0][count] = System.nanoTime() - start;
+					count += 1;
+				}
+				synchronized (latencies) {
+					latencies.add(Arrays.copyOf(samples[0], count));
+				}
+			});
+			threads.add(thread);
+		}
+		long start = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+		if (all.length == 0) {
+			System.err.println("No requests completed");
+			return;
+		}
+		System.out.println(String.format("requests  %d (%d failed)", all.length, failures.get()));
+		System.out.println(String.format("req/s     %.0f", all.length / elapsed));
+		System.out.println(String.format("p50       %.3f ms", percentile(all, 0.50) / 1e6));
+		System.out.println(String.format("p99       %.3f ms", percentile(all, 0.99) / 1e6));
+		System.out.println(String.format("max       %.3f ms", all[all.length - 1] / 1e6));
+	}
+
+	protected static long percentile(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}
+}
@@ -0,0 +1,77 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.AmbiguousIdException;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// id prefix lookups as done by CliClient.getCategory and getAssignment
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+	@Param({"10", "100"})
+	public int categories;
+
+	@Param({"10", "1000", "100000"})
+	public int assignments;
+
+	@Param({"8", "36"})
+	public int prefixLength;
+
+	protected Course course;
+	protected Category category;
+	protected String[] categoryPrefixes, assignmentPrefixes;
+	protected Random random;
+
+	@Setup
+	public void setup() {
+		course = Fixtures.course(1, categories, assignments, false, 0);
+		category = course.categories.values().iterator().next();
+		categoryPrefixes = course.categories.keySet().stream()
+			.map(id -> id.toString().substring(0, prefixLength))
+			.toArray(String[]::new);
+		assignmentPrefixes = category.assignments.keySet().stream()
+			.map(id -> id.toString().substring(0, prefixLength))
+			.toArray(String[]::new);
+		random = new Random(2);
+	}
+
+	@Benchmark
+	public Optional<Category> getCategory() throws AmbiguousIdException {
+		return course.findCategory(categoryPrefixes[random.nextInt(categoryPrefixes.length)]);
+	}
+
+	@Benchmark
+	public Optional<Assignment> getAssignment() throws AmbiguousIdException {
+		return category.findAssignment(assignmentPrefixes[random.nextInt(assignmentPrefixes.length)]);
+	}
+
+	// the linear scan the index replaced, for comparison
+	@Benchmark
+	public Optional<Assignment> getAssignmentScan() {
+		String prefix = assignmentPrefixes[random.nextInt(assignmentPrefixes.length)];
+		return category.assignments.values().stream()
+			.filter(assignment -> assignment.id.toString().startsWith(prefix))
+			.findAny();
+	}
+}
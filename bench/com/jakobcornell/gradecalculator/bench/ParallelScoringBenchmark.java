@@ -0,0 +1,61 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.ParallelScorer;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// scoring a whole course from its assignments with ParallelScorer, by pool size
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelScoringBenchmark {
+	@Param({"1", "1000"})
+	public int categories;
+
+	@Param({"1000", "1000000"})
+	public int assignments;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	protected Course course;
+	protected ForkJoinPool pool;
+	protected ParallelScorer scorer;
+
+	@Setup
+	public void setup() {
+		// the same number of assignments in total, however many categories they're split into
+		course = Fixtures.course(1, categories, Math.max(1, assignments / categories), false, 0);
+		pool = new ForkJoinPool(threads);
+		scorer = new ParallelScorer(pool);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public double score() throws ScoringException {
+		return scorer.score(course);
+	}
+}
@@ -0,0 +1,87 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.CliClient;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/*
+ * Feeds a command stream, recorded or from GradebookGenerator, to CliClient.main as its standard
+ * input, then reports throughput and the per-command latencies Metrics recorded. Streams are in
+ * the batch format unless -i is given, in which case they're REPL input, and only the commands the
+ * REPL times are reported on. The client's output is counted and discarded; its errors still go to
+ * stderr.
+ *
+ *   Replay [-i] <commands file|->
+ */
+public class Replay {
+	public static void main(String[] args) throws IOException {
+		boolean interactive = false;
+		String file = null;
+		for (int i = 0; i < args.length; i += 1) {
+			if (args[i].equals("-i")) {
+				interactive = true;
+			} else if (file == null) {
+				file = args[i];
+			} else {
+				file = null;
+				break;
+			}
+		}
+		if (file == null) {
+			System.err.println("Usage: Replay [-i] <commands file|->");
+			return;
+		}
+
+		// Metrics reads this once, when it's first used
+		if (System.getProperty("gradecalculator.metrics") == null) {
+			System.setProperty("gradecalculator.metrics", "true");
+		}
+		if (!Metrics.ENABLED) {
+			System.err.print(Metrics.report());
+			return;
+		}
+
+		byte[] commands = file.equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Paths.get(file));
+		long lines = 0;
+		for (String line : new String(commands, StandardCharsets.UTF_8).split("\n")) {
+			String trimmed = line.trim();
+			if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+				lines += 1;
+			}
+		}
+
+		InputStream in = System.in;
+		PrintStream out = System.out;
+		long[] written = {0};
+		System.setIn(new ByteArrayInputStream(commands));
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+				written[0] += 1;
+			}
+
+			public void write(byte[] bytes, int offset, int length) {
+				written[0] += length;
+			}
+		}));
+		long start = System.nanoTime();
+		try {
+			CliClient.main(interactive ? new String[0] : new String[] {"batch"});
+		} finally {
+			System.out.flush();
+			System.setOut(out);
+			System.setIn(in);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("%d %s in %.2fs, %.0f per second, %d bytes of output", lines, interactive ? "lines" : "commands", seconds, lines / seconds, written[0]));
+		System.out.print(Metrics.report());
+	}
+}
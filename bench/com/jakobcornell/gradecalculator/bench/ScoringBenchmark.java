@@ -0,0 +1,80 @@
+package com.jakobcornell.gradecalculator.bench;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ScoringBenchmark {
+	@Param({"1", "10", "100"})
+	public int categories;
+
+	@Param({"10", "1000", "100000"})
+	public int assignments;
+
+	@Param({"true", "false"})
+	public boolean useWeights;
+
+	@Param({"0", "0.5"})
+	public double unscorableRate;
+
+	protected Course course;
+	protected Category category;
+	protected Assignment[] all;
+	protected Random random;
+
+	@Setup
+	public void setup() {
+		course = Fixtures.course(1, categories, assignments, useWeights, unscorableRate);
+		category = course.categories.values().iterator().next();
+		all = course.categories.values().stream()
+			.flatMap(category -> category.assignments.values().stream())
+			.toArray(Assignment[]::new);
+		random = new Random(2);
+	}
+
+	@Benchmark
+	public double assignmentScore() throws ScoringException {
+		Assignment assignment = all[random.nextInt(all.length)];
+		return assignment.isScorable() ? assignment.score() : 0;
+	}
+
+	@Benchmark
+	public double categoryScore() throws ScoringException {
+		return category.isScorable() ? category.score() : 0;
+	}
+
+	@Benchmark
+	public double courseScore() throws ScoringException {
+		return course.isScorable() ? course.score() : 0;
+	}
+
+	// one edit followed by a regrade, the pattern the cached sums are built for
+	@Benchmark
+	public double editAndCourseScore() throws ScoringException {
+		Assignment assignment = all[random.nextInt(all.length)];
+		assignment.setEarned(random.nextDouble() * assignment.getPossible());
+		return course.isScorable() ? course.score() : 0;
+	}
+}
@@ -0,0 +1,461 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.Projection;
+import com.jakobcornell.gradecalculator.model.Query;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.model.AmbiguousIdException;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+import com.jakobcornell.gradecalculator.storage.DelimitedFormat;
+import com.jakobcornell.gradecalculator.storage.Journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Non-interactive counterpart to the REPL: one command per line with all of its arguments, no
+ * prompts, and buffered input and output. Arguments are separated by whitespace and may be
+ * double-quoted (with \" and \\ escapes) to include whitespace. Wherever a category or assignment
+ * id prefix is expected, "-" refers to the one most recently added. Blank lines and lines starting
+ * with # are ignored. Errors are reported on stderr with their line number and don't stop the run.
+ */
+public class BatchClient {
+	protected static final String[] USAGE = {
+		"open <file>",
+		"save <file>",
+		"import <file.csv|file.tsv>",
+		"export <file.csv|file.tsv>",
+		"new-course <name>",
+		"course-info",
+		"categories",
+		"category-info <category>",
+		"assignments <category>",
+		"assignment-info <category> <assignment>",
+		"add-category <name> <weight> <uses weights>",
+		"add-assignment <category> <name> <weight> <earned> <possible>",
+		"update-course <name>",
+		"update-category <category> <name|weight|uses-weights> <value>",
+		"update-assignment <category> <assignment> <name|weight|earned|possible> <value>",
+		"remove-category <category>",
+		"remove-assignment <category> <assignment>",
+		"grade",
+		"project <target|-> [<category> <assignment> <earned|?>]...",
+		"query [in <category>] [where <score|weight|lost|name> <op> <value>]... [order <key> [asc|desc]] [limit <n>]",
+		"stats",
+	};
+
+	protected final Writer out;
+	protected Course course;
+	protected Category lastCategory;
+	protected Assignment lastAssignment;
+	protected int lineNumber;
+
+	public BatchClient(Writer out) {
+		this(out, null);
+	}
+
+	public BatchClient(Writer out, Course course) {
+		this.out = out;
+		this.course = course;
+	}
+
+	public Course getCourse() {
+		return course;
+	}
+
+	public void run(Reader in) throws IOException {
+		BufferedReader reader = new BufferedReader(in, 1 << 16);
+		List<String> arguments = new ArrayList<String>();
+		String line;
+		lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber += 1;
+			try {
+				tokenize(line, arguments);
+				if (!arguments.isEmpty() && !arguments.get(0).startsWith("#")) {
+					long start = Metrics.start();
+					execute(arguments);
+					Metrics.command(arguments.get(0), start);
+				}
+			} catch (CommandException e) {
+				error(String.format("line %d: %s", lineNumber, e.getMessage()));
+			} catch (RuntimeException e) {
+				// a command that fails unexpectedly is still one line's error, not the end of the run
+				error(String.format("line %d: %s", lineNumber, e));
+			}
+		}
+		out.flush();
+	}
+
+	protected void error(String message) throws IOException {
+		out.flush();
+		System.err.println(message);
+	}
+
+	protected void execute(List<String> arguments) throws CommandException, IOException {
+		String command = arguments.get(0);
+		if (command.equals("open")) {
+
+			expect(arguments, 1);
+			try {
+				course = CliClient.readCourse(Paths.get(arguments.get(1)));
+				lastCategory = null;
+				lastAssignment = null;
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				// deserializing runs the model's validation, which throws unchecked exceptions on bad values
+				throw new CommandException(String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("save")) {
+
+			expect(arguments, 1);
+			try {
+				// a whole snapshot, replacing the file atomically and starting its journal over
+				Journal.snapshot(course(), Paths.get(arguments.get(1))).close();
+			} catch (IOException e) {
+				throw new CommandException(String.format(CliClient.Message.COURSE_WRITE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("import")) {
+
+			expect(arguments, 1);
+			Course course = course();
+			Path path = Paths.get(arguments.get(1));
+			try {
+				DelimitedFormat.forPath(path).read(path, course);
+			} catch (IOException e) {
+				throw new CommandException(String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("export")) {
+
+			expect(arguments, 1);
+			Course course = course();
+			Path path = Paths.get(arguments.get(1));
+			try {
+				DelimitedFormat.forPath(path).write(course, path);
+			} catch (IOException e) {
+				throw new CommandException(String.format(CliClient.Message.COURSE_WRITE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("new-course")) {
+
+			expect(arguments, 1);
+			course = new Course(arguments.get(1));
+			lastCategory = null;
+			lastAssignment = null;
+
+		} else if (command.equals("course-info")) {
+
+			expect(arguments, 0);
+			out.write("name: ");
+			out.write(String.valueOf(course().getName()));
+			out.write('\n');
+
+		} else if (command.equals("categories")) {
+
+			expect(arguments, 0);
+			for (Category category : course().categories.values()) {
+				writeEntry(category.id.toString(), category.getName());
+			}
+
+		} else if (command.equals("category-info")) {
+
+			expect(arguments, 1);
+			Category category = category(arguments.get(1));
+			out.write(String.format("category %s\tname: %s\tweight: %s\tuses weights: %b\n", category.id, category.getName(), category.getWeight(), category.getUseWeights()));
+
+		} else if (command.equals("assignments")) {
+
+			expect(arguments, 1);
+			for (Assignment assignment : category(arguments.get(1)).assignments.values()) {
+				writeEntry(assignment.id.toString(), assignment.getName());
+			}
+
+		} else if (command.equals("assignment-info")) {
+
+			expect(arguments, 2);
+			Assignment assignment = assignment(category(arguments.get(1)), arguments.get(2));
+			out.write(String.format("assignment %s\tname: %s\tweight: %s\tearned: %s\tpossible: %s\n", assignment.id, assignment.getName(), assignment.getWeight(), assignment.getEarned(), assignment.getPossible()));
+
+		} else if (command.equals("add-category")) {
+
+			expect(arguments, 3);
+			Course course = course();
+			try {
+				Category category = new Category(arguments.get(1), number(arguments.get(2)), bool(arguments.get(3)));
+				course.categories.put(category.id, category);
+				lastCategory = category;
+				out.write(category.id.toString());
+				out.write('\n');
+			} catch (IllegalArgumentException e) {
+				throw new CommandException(String.format(CliClient.Message.CATEGORY_CREATE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("add-assignment")) {
+
+			expect(arguments, 5);
+			Category category = category(arguments.get(1));
+			try {
+				Assignment assignment = new Assignment(arguments.get(2), number(arguments.get(3)), number(arguments.get(4)), number(arguments.get(5)));
+				category.assignments.put(assignment.id, assignment);
+				lastAssignment = assignment;
+				out.write(assignment.id.toString());
+				out.write('\n');
+			} catch (IllegalArgumentException e) {
+				throw new CommandException(String.format(CliClient.Message.ASSIGNMENT_CREATE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("update-course")) {
+
+			expect(arguments, 1);
+			course().setName(arguments.get(1));
+
+		} else if (command.equals("update-category")) {
+
+			expect(arguments, 3);
+			Category category = category(arguments.get(1));
+			String attribute = arguments.get(2), value = arguments.get(3);
+			try {
+				if (attribute.equals("name")) {
+					category.setName(value);
+				} else if (attribute.equals("weight")) {
+					category.setWeight(number(value));
+				} else if (attribute.equals("uses-weights")) {
+					category.setUseWeights(bool(value));
+				} else {
+					throw new CommandException(CliClient.Message.BAD_ATTRIBUTE.toString());
+				}
+			} catch (IllegalArgumentException e) {
+				throw new CommandException(String.format(CliClient.Message.CATEGORY_UPDATE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("update-assignment")) {
+
+			expect(arguments, 4);
+			Assignment assignment = assignment(category(arguments.get(1)), arguments.get(2));
+			String attribute = arguments.get(3), value = arguments.get(4);
+			try {
+				if (attribute.equals("name")) {
+					assignment.setName(value);
+				} else if (attribute.equals("weight")) {
+					assignment.setWeight(number(value));
+				} else if (attribute.equals("earned")) {
+					assignment.setEarned(number(value));
+				} else if (attribute.equals("possible")) {
+					assignment.setPossible(number(value));
+				} else {
+					throw new CommandException(CliClient.Message.BAD_ATTRIBUTE.toString());
+				}
+			} catch (IllegalArgumentException e) {
+				throw new CommandException(String.format(CliClient.Message.ASSIGNMENT_UPDATE.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("remove-category")) {
+
+			expect(arguments, 1);
+			course().categories.remove(category(arguments.get(1)).id);
+
+		} else if (command.equals("remove-assignment")) {
+
+			expect(arguments, 2);
+			Category category = category(arguments.get(1));
+			category.assignments.remove(assignment(category, arguments.get(2)).id);
+
+		} else if (command.equals("grade")) {
+
+			expect(arguments, 0);
+			try {
+				out.write(Double.toString(course().score()));
+				out.write('\n');
+			} catch (ScoringException e) {
+				throw new CommandException(String.format(CliClient.Message.SCORING_ERROR.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("project")) {
+
+			// each assignment named is given the points earned, or if "?" counted as still to come
+			if (arguments.size() % 3 != 2) {
+				expect(arguments, -1);
+			}
+			Projection projection = new Projection(course());
+			List<Assignment> remaining = new ArrayList<Assignment>();
+			for (int i = 2; i < arguments.size(); i += 3) {
+				Assignment assignment = assignment(category(arguments.get(i)), arguments.get(i + 1));
+				if (arguments.get(i + 2).equals("?")) {
+					remaining.add(assignment);
+				} else {
+					try {
+						projection.setEarned(assignment, number(arguments.get(i + 2)));
+					} catch (IllegalArgumentException e) {
+						throw new CommandException(String.format(CliClient.Message.PROJECTION_ERROR.toString(), e.getMessage()));
+					}
+				}
+			}
+			try {
+				out.write(Double.toString(projection.score()));
+				out.write('\n');
+				if (!arguments.get(1).equals("-") && !remaining.isEmpty()) {
+					out.write(Double.toString(projection.needed(remaining, number(arguments.get(1)))));
+					out.write('\n');
+				}
+			} catch (ScoringException e) {
+				throw new CommandException(String.format(CliClient.Message.SCORING_ERROR.toString(), e.getMessage()));
+			}
+
+		} else if (command.equals("query")) {
+
+			// one line per match: category id, assignment id, name, score, weight, lost points
+			List<Query.Match> matches;
+			try {
+				matches = CliClient.parseQuery(course(), arguments.subList(1, arguments.size())).run();
+			} catch (IllegalArgumentException e) {
+				throw new CommandException(String.format(CliClient.Message.QUERY_ERROR.toString(), e.getMessage()));
+			}
+			for (Query.Match match : matches) {
+				out.write(String.format("%s\t%s\t%s\t%s\t%s\t%s\n", match.getCategory().id, match.getAssignment().id, match.getName(), match.getScore(), match.getWeight(), match.getLost()));
+			}
+
+		} else if (command.equals("stats")) {
+
+			expect(arguments, 0);
+			out.write(Metrics.report());
+
+		} else {
+			throw new CommandException(CliClient.Message.BAD_COMMAND.toString());
+		}
+	}
+
+	protected void writeEntry(String id, String name) throws IOException {
+		out.write(id);
+		out.write('\t');
+		out.write(String.valueOf(name));
+		out.write('\n');
+	}
+
+	protected Course course() throws CommandException {
+		if (course == null) {
+			throw new CommandException(CliClient.Message.NO_COURSE.toString());
+		}
+		return course;
+	}
+
+	protected Category category(String id) throws CommandException {
+		Course course = course();
+		if (id.equals("-")) {
+			if (lastCategory == null || course.categories.get(lastCategory.id) != lastCategory) {
+				throw new CommandException(CliClient.Message.BAD_CATEGORY.toString());
+			}
+			return lastCategory;
+		}
+		try {
+			return course.findCategory(id)
+				.orElseThrow(() -> new CommandException(CliClient.Message.BAD_CATEGORY.toString()));
+		} catch (AmbiguousIdException e) {
+			throw new CommandException(CliClient.Message.AMBIGUOUS_CATEGORY.toString());
+		}
+	}
+
+	protected Assignment assignment(Category category, String id) throws CommandException {
+		if (id.equals("-")) {
+			if (lastAssignment == null || category.assignments.get(lastAssignment.id) != lastAssignment) {
+				throw new CommandException(CliClient.Message.BAD_ASSIGNMENT.toString());
+			}
+			return lastAssignment;
+		}
+		try {
+			return category.findAssignment(id)
+				.orElseThrow(() -> new CommandException(CliClient.Message.BAD_ASSIGNMENT.toString()));
+		} catch (AmbiguousIdException e) {
+			throw new CommandException(CliClient.Message.AMBIGUOUS_ASSIGNMENT.toString());
+		}
+	}
+
+	protected static double number(String value) throws CommandException {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new CommandException(String.format("Not a number: %s", value));
+		}
+	}
+
+	protected static boolean bool(String value) throws CommandException {
+		if (value.equals("true")) {
+			return true;
+		} else if (value.equals("false")) {
+			return false;
+		} else {
+			throw new CommandException(String.format("Not true or false: %s", value));
+		}
+	}
+
+	protected static void expect(List<String> arguments, int count) throws CommandException {
+		if (arguments.size() != count + 1) {
+			String command = arguments.get(0);
+			for (String usage : USAGE) {
+				if (usage.equals(command) || usage.startsWith(command + " ")) {
+					throw new CommandException(String.format("Usage: %s", usage));
+				}
+			}
+			throw new CommandException(CliClient.Message.BAD_COMMAND.toString());
+		}
+	}
+
+	protected static void tokenize(String line, List<String> tokens) throws CommandException {
+		tokens.clear();
+		int i = 0, length = line.length();
+		while (i < length) {
+			char c = line.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i += 1;
+			} else if (c == '"') {
+				StringBuilder token = new StringBuilder();
+				i += 1;
+				while (i < length && line.charAt(i) != '"') {
+					if (line.charAt(i) == '\\' && i + 1 < length) {
+						i += 1;
+					}
+					token.append(line.charAt(i));
+					i += 1;
+				}
+				if (i == length) {
+					throw new CommandException("Unterminated quote");
+				}
+				tokens.add(token.toString());
+				i += 1;
+			} else {
+				int start = i;
+				while (i < length && !Character.isWhitespace(line.charAt(i))) {
+					i += 1;
+				}
+				tokens.add(line.substring(start, i));
+			}
+		}
+	}
+
+	protected static class CommandException extends Exception {
+		protected CommandException(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	public static void main(String[] args) {
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+		try {
+			(new BatchClient(out)).run(new InputStreamReader(System.in));
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.storage.Journal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Grades many course files in one JVM. Files are read and scored on a pool of worker threads, and
+ * results are written in input order, with a bounded number of files in flight at once.
+ */
+public class BatchGrader {
+	protected final int threads;
+
+	public BatchGrader(int threads) throws IllegalArgumentException {
+		if (threads > 0) {
+			this.threads = threads;
+		} else {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+	}
+
+	public void grade(List<Path> files, Writer out) throws IOException, InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			Queue<Future<String>> pending = new ArrayDeque<Future<String>>();
+			for (Path file : files) {
+				if (pending.size() >= threads * 4) {
+					write(pending.remove(), out);
+				}
+				pending.add(pool.submit(() -> grade(file)));
+			}
+			while (!pending.isEmpty()) {
+				write(pending.remove(), out);
+			}
+			out.flush();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	protected void write(Future<String> result, Writer out) throws IOException, InterruptedException {
+		if (!result.isDone()) {
+			out.flush();
+		}
+		try {
+			out.write(result.get());
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		out.write('\n');
+	}
+
+	protected String grade(Path file) {
+		Course course;
+		try {
+			course = CliClient.readCourse(file);
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			// deserializing runs the model's validation, which throws unchecked exceptions on bad values
+			return String.format("%s\t%s", file, String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		}
+
+		try {
+			return String.format("%s\t%s", file, course.score());
+		} catch (ScoringException e) {
+			return String.format("%s\t%s", file, String.format(CliClient.Message.SCORING_ERROR.toString(), e.getMessage()));
+		}
+	}
+
+	// expands directories into their regular files, sorted by name, leaving out journals and temporary files
+	protected static List<Path> expand(List<String> names) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		for (String name : names) {
+			Path path = Paths.get(name);
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> entries = Files.list(path)) {
+					List<Path> contents = entries
+						.filter(Files::isRegularFile)
+						.filter(entry -> !Journal.isSidecar(entry))
+						.collect(Collectors.toList());
+					Collections.sort(contents);
+					files.addAll(contents);
+				}
+			} else {
+				files.add(path);
+			}
+		}
+		return files;
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < args.length; i += 1) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[i + 1]);
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				i += 1;
+			} else {
+				names.add(args[i]);
+			}
+		}
+
+		if (names.isEmpty() || threads <= 0) {
+			System.err.println(String.format("Usage: java %s grade-batch [-j threads] <file|directory>...", CliClient.class.getSimpleName()));
+			return;
+		}
+
+		try {
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+			(new BatchGrader(threads)).grade(expand(names), out);
+		} catch (IOException e) {
+			System.err.println(String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -3,15 +3,38 @@ package com.jakobcornell.gradecalculator;
 import com.jakobcornell.gradecalculator.model.Course;
 import com.jakobcornell.gradecalculator.model.Category;
 import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.Projection;
+import com.jakobcornell.gradecalculator.model.ParallelScorer;
+import com.jakobcornell.gradecalculator.model.Query;
 import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.model.AmbiguousIdException;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+import com.jakobcornell.gradecalculator.storage.BinaryFormat;
+import com.jakobcornell.gradecalculator.storage.CourseDiff;
+import com.jakobcornell.gradecalculator.storage.CourseMerge;
+import com.jakobcornell.gradecalculator.storage.DelimitedFormat;
+import com.jakobcornell.gradecalculator.storage.Journal;
+import com.jakobcornell.gradecalculator.storage.MappedCourse;
 
 import java.util.Scanner;
+import java.util.List;
+import java.util.ArrayList;
 import java.util.Optional;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class CliClient {
 	protected static final String PROMPT = "> ";
@@ -22,6 +45,8 @@ public class CliClient {
 		NO_COURSE("No course loaded. Use \"new course\" or \"open\" to load one."),
 		BAD_CATEGORY("Unrecognized category."),
 		BAD_ASSIGNMENT("Unrecognized assignment."),
+		AMBIGUOUS_CATEGORY("More than one category matches. Enter more of the id."),
+		AMBIGUOUS_ASSIGNMENT("More than one assignment matches. Enter more of the id."),
 		CATEGORY_CREATE("Error creating category: %s"),
 		ASSIGNMENT_CREATE("Error creating assignment: %s"),
 		CATEGORY_UPDATE("Error updating category: %s"),
@@ -30,7 +55,9 @@ public class CliClient {
 		COURSE_READ("Error reading course: %s"),
 		COURSE_WRITE("Error writing course: %s"),
 		BAD_ATTRIBUTE("Unrecognized attribute."),
-		SCORING_ERROR("Error calculating score: %s");
+		SCORING_ERROR("Error calculating score: %s"),
+		PROJECTION_ERROR("Error projecting score: %s"),
+		QUERY_ERROR("Error in query: %s");
 
 		protected String message;
 
@@ -43,8 +70,27 @@ public class CliClient {
 		}
 	}
 
+	// commands which need a mapped course loaded into memory first
+	protected static final Set<String> LOADING_COMMANDS = new HashSet<String>(Arrays.asList(
+		"save", "import", "export", "add category", "add assignment", "update course", "update category", "update assignment", "remove category", "remove assignment", "project", "query"
+	));
+
+	// commands timed for stats; the others prompt for more input, and the wait would be timed with them
+	protected static final Set<String> TIMED_COMMANDS = new HashSet<String>(Arrays.asList(
+		"open", "save", "import", "export", "course info", "categories", "grade", "query"
+	));
+
 	protected Course course;
 
+	// binary course files are opened as a mapping, and only loaded into course once edited or saved
+	protected MappedCourse mapped;
+
+	/*
+	 * Journal of the file the course was opened from or last saved to. Edits are recorded in it as
+	 * they're made, and saving to the same file again only commits them.
+	 */
+	protected Journal journal;
+
 	public void main() {
 		Scanner scanner = new Scanner(System.in);
 		System.out.print(PROMPT);
@@ -52,15 +98,38 @@ public class CliClient {
 			String command = scanner.nextLine();
 			String[] tokens = command.split("\\s+", 2);
 			if (tokens.length > 0) {
+				if (mapped != null && (LOADING_COMMANDS.contains(command) || LOADING_COMMANDS.contains(tokens[0]))) {
+					try {
+						course = mapped.load();
+						mapped = null;
+					} catch (IOException e) {
+						System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+						System.out.print(PROMPT);
+						continue;
+					}
+				}
+
+				long start = Metrics.start();
 				if (tokens[0].equals("open")) {
 
 					if (tokens.length == 2) {
-						try (
-							FileInputStream fileIn = new FileInputStream(tokens[1]);
-							ObjectInputStream courseIn = new ObjectInputStream(fileIn);
-						) {
-							course = (Course) courseIn.readObject();
-						} catch (IOException | ClassNotFoundException e) {
+						try {
+							Path path = Paths.get(tokens[1]);
+							closeJournal();
+							if (isBinaryFormat(path)) {
+								journal = Journal.open(path);
+								if (journal == null || journal.isEmpty()) {
+									mapped = MappedCourse.open(path);
+									course = null;
+								} else {
+									course = readCourse(path);
+									mapped = null;
+								}
+							} else {
+								course = readCourse(path);
+								mapped = null;
+							}
+						} catch (IOException | ClassNotFoundException | RuntimeException e) {
 							System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
 						}
 					} else {
@@ -73,11 +142,8 @@ public class CliClient {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						if (tokens.length == 2) {
-							try (
-								FileOutputStream fileOut = new FileOutputStream(tokens[1]);
-								ObjectOutputStream courseOut = new ObjectOutputStream(fileOut);
-							) {
-								courseOut.writeObject(course);
+							try {
+								save(Paths.get(tokens[1]));
 							} catch (IOException e) {
 								System.err.println(String.format(Message.COURSE_WRITE.toString(), e.getMessage()));
 							}
@@ -86,33 +152,96 @@ public class CliClient {
 						}
 					}
 
+				} else if (tokens[0].equals("import")) {
+
+					if (course == null) {
+						System.err.println(Message.NO_COURSE);
+					} else if (tokens.length == 2) {
+						Path path = Paths.get(tokens[1]);
+						// too many records to be worth journaling; the next save writes the whole course
+						closeJournal();
+						try {
+							long count = DelimitedFormat.forPath(path).read(path, course);
+							System.out.println(String.format("imported %d assignments", count));
+						} catch (IOException e) {
+							System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+						}
+					} else {
+						System.err.println(Message.FILENAME_MISSING);
+					}
+
+				} else if (tokens[0].equals("export")) {
+
+					if (course == null) {
+						System.err.println(Message.NO_COURSE);
+					} else if (tokens.length == 2) {
+						Path path = Paths.get(tokens[1]);
+						try {
+							DelimitedFormat.forPath(path).write(course, path);
+						} catch (IOException e) {
+							System.err.println(String.format(Message.COURSE_WRITE.toString(), e.getMessage()));
+						}
+					} else {
+						System.err.println(Message.FILENAME_MISSING);
+					}
+
 				} else if (command.equals("new course")) {
 
 					System.out.print(LEADER + "course name: ");
 					course = new Course(scanner.nextLine());
+					mapped = null;
+					closeJournal();
 
 				} else if (command.equals("course info")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						try {
+							System.out.println(String.format("name: %s", mapped.getName()));
+						} catch (IOException e) {
+							System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
-						System.out.println(String.format("name: %s", course.name));
+						System.out.println(String.format("name: %s", course.getName()));
 					}
 
 				} else if (command.equals("categories")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						try {
+							System.out.println(String.format("categories (%d):", mapped.getCategoryCount()));
+							for (int i = 0; i < mapped.getCategoryCount(); i += 1) {
+								System.out.println(String.format("\t%s : %s", mapped.getCategoryId(i), mapped.getCategoryName(i)));
+							}
+						} catch (IOException e) {
+							System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						System.out.println(String.format("categories (%d):", course.categories.size()));
 						for (Category category : course.categories.values()) {
-							System.out.println(String.format("\t%s : %s", category.id, category.name));
+							System.out.println(String.format("\t%s : %s", category.id, category.getName()));
 						}
 					}
 
 				} else if (command.equals("category info")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						System.out.print(LEADER + "category id: ");
+						int category = getMappedCategory(scanner.nextLine());
+						if (category >= 0) {
+							try {
+								System.out.println(String.format("category %s:", mapped.getCategoryId(category)));
+								System.out.println(String.format("\tname: %s", mapped.getCategoryName(category)));
+								System.out.println(String.format("\tweight: %f", mapped.getCategoryWeight(category)));
+								System.out.println(String.format("\tuses weights: %b", mapped.getCategoryUseWeights(category)));
+							} catch (IOException e) {
+								System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+							}
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						System.out.print(LEADER + "category id: ");
@@ -121,17 +250,29 @@ public class CliClient {
 						if (result.isPresent()) {
 							Category category = result.get();
 							System.out.println(String.format("category %s:", category.id));
-							System.out.println(String.format("\tname: %s", category.name));
+							System.out.println(String.format("\tname: %s", category.getName()));
 							System.out.println(String.format("\tweight: %f", category.getWeight()));
-							System.out.println(String.format("\tuses weights: %b", category.useWeights));
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
+							System.out.println(String.format("\tuses weights: %b", category.getUseWeights()));
 						}
 					}
 
 				} else if (command.equals("assignments")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						System.out.print(LEADER + "category id: ");
+						int category = getMappedCategory(scanner.nextLine());
+						if (category >= 0) {
+							try {
+								int first = mapped.getFirstAssignment(category), count = mapped.getAssignmentCount(category);
+								System.out.println(String.format("assignments (%d):", count));
+								for (int i = first; i < first + count; i += 1) {
+									System.out.println(String.format("\t%s : %s", mapped.getAssignmentId(i), mapped.getAssignmentName(i)));
+								}
+							} catch (IOException e) {
+								System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+							}
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						System.out.print(LEADER + "category id: ");
@@ -141,16 +282,32 @@ public class CliClient {
 							Category category = result.get();
 							System.out.println(String.format("assignments (%d):", category.assignments.size()));
 							for (Assignment assignment : category.assignments.values()) {
-								System.out.println(String.format("\t%s : %s", assignment.id, assignment.name));
+								System.out.println(String.format("\t%s : %s", assignment.id, assignment.getName()));
 							}
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
 						}
 					}
 
 				} else if (command.equals("assignment info")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						System.out.print(LEADER + "category id: ");
+						int category = getMappedCategory(scanner.nextLine());
+						if (category >= 0) {
+							System.out.print(LEADER + "assignment id: ");
+							int assignment = getMappedAssignment(category, scanner.nextLine());
+							if (assignment >= 0) {
+								try {
+									System.out.println(String.format("assignment %s:", mapped.getAssignmentId(assignment)));
+									System.out.println(String.format("\tname: %s", mapped.getAssignmentName(assignment)));
+									System.out.println(String.format("\tweight: %f", mapped.getAssignmentWeight(assignment)));
+									System.out.println(String.format("\tearned: %f", mapped.getAssignmentEarned(assignment)));
+									System.out.println(String.format("\tpossible: %f", mapped.getAssignmentPossible(assignment)));
+								} catch (IOException e) {
+									System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+								}
+							}
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						System.out.print(LEADER + "category id: ");
@@ -164,15 +321,11 @@ public class CliClient {
 							if (assignmentResult.isPresent()) {
 								Assignment assignment = assignmentResult.get();
 								System.out.println(String.format("assignment %s:", assignment.id));
-								System.out.println(String.format("\tname: %s", assignment.name));
+								System.out.println(String.format("\tname: %s", assignment.getName()));
 								System.out.println(String.format("\tweight: %f", assignment.getWeight()));
 								System.out.println(String.format("\tearned: %f", assignment.getEarned()));
 								System.out.println(String.format("\tpossible: %f", assignment.getPossible()));
-							} else {
-								System.err.println(Message.BAD_ASSIGNMENT);
 							}
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
 						}
 					}
 
@@ -196,6 +349,9 @@ public class CliClient {
 						try {
 							category = new Category(name, weight, useWeights);
 							course.categories.put(category.id, category);
+							if (journal != null) {
+								journal.category(category);
+							}
 						} catch (IllegalArgumentException e) {
 							System.err.println(String.format(Message.CATEGORY_CREATE.toString(), e.getMessage()));
 						}
@@ -231,12 +387,13 @@ public class CliClient {
 							try {
 								assignment = new Assignment(name, weight, earned, possible);
 								category.assignments.put(assignment.id, assignment);
+								if (journal != null) {
+									journal.assignment(category, assignment);
+								}
 							} catch (IllegalArgumentException e) {
 								System.err.println(String.format(Message.ASSIGNMENT_CREATE.toString(), e.getMessage()));
 							}
 
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
 						}
 					}
 
@@ -247,7 +404,10 @@ public class CliClient {
 					} else {
 						System.out.print(LEADER + "new name: ");
 						String name = scanner.nextLine();
-						course.name = name;
+						course.setName(name);
+						if (journal != null) {
+							journal.course(course);
+						}
 					}
 
 				} else if (command.equals("update category")) {
@@ -267,7 +427,7 @@ public class CliClient {
 							if (attribute.equals("name")) {
 								System.out.print(LEADER + "new name: ");
 								String name = scanner.nextLine();
-								category.name = name;
+								category.setName(name);
 							} else if (attribute.equals("weight")) {
 								System.out.print(LEADER + "new weight: ");
 								double weight = scanner.nextDouble();
@@ -281,12 +441,13 @@ public class CliClient {
 								System.out.print(LEADER + "uses weights? (true|false): ");
 								boolean useWeights = scanner.nextBoolean();
 								scanner.nextLine();
-								category.useWeights = useWeights;
+								category.setUseWeights(useWeights);
 							} else {
 								System.err.println(Message.BAD_ATTRIBUTE);
 							}
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
+							if (journal != null) {
+								journal.category(category);
+							}
 						}
 					}
 
@@ -312,7 +473,7 @@ public class CliClient {
 								if (attribute.equals("name")) {
 									System.out.print(LEADER + "new name: ");
 									String name = scanner.nextLine();
-									assignment.name = name;
+									assignment.setName(name);
 								} else if (attribute.equals("weight")) {
 									System.out.print(LEADER + "new weight: ");
 									double weight = scanner.nextDouble();
@@ -343,11 +504,10 @@ public class CliClient {
 								} else {
 									System.err.println(Message.BAD_ATTRIBUTE);
 								}
-							} else {
-								System.err.println(Message.BAD_ASSIGNMENT);
+								if (journal != null) {
+									journal.assignment(category, assignment);
+								}
 							}
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
 						}
 					}
 
@@ -362,8 +522,9 @@ public class CliClient {
 
 						if (result.isPresent()) {
 							course.categories.remove(result.get().id);
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
+							if (journal != null) {
+								journal.removeCategory(result.get());
+							}
 						}
 					}
 
@@ -384,17 +545,22 @@ public class CliClient {
 
 							if (assignmentResult.isPresent()) {
 								category.assignments.remove(assignmentResult.get().id);
-							} else {
-								System.err.println(Message.BAD_ASSIGNMENT);
+								if (journal != null) {
+									journal.removeAssignment(category, assignmentResult.get());
+								}
 							}
-						} else {
-							System.err.println(Message.BAD_CATEGORY);
 						}
 					}
 
 				} else if (command.equals("grade")) {
 
-					if (course == null) {
+					if (mapped != null) {
+						try {
+							System.out.println(mapped.score());
+						} catch (ScoringException e) {
+							System.err.println(String.format(Message.SCORING_ERROR.toString(), e.getMessage()));
+						}
+					} else if (course == null) {
 						System.err.println(Message.NO_COURSE);
 					} else {
 						double score;
@@ -406,11 +572,84 @@ public class CliClient {
 						}
 					}
 
+				} else if (command.equals("project")) {
+
+					if (course == null) {
+						System.err.println(Message.NO_COURSE);
+					} else {
+						Projection projection = new Projection(course);
+						List<Assignment> remaining = new ArrayList<Assignment>();
+						while (true) {
+							System.out.print(LEADER + "category id (blank when done): ");
+							String categoryId = scanner.nextLine();
+							if (categoryId.isEmpty()) {
+								break;
+							}
+							Optional<Category> categoryResult = getCategory(categoryId);
+
+							if (categoryResult.isPresent()) {
+								Category category = categoryResult.get();
+								System.out.print(LEADER + "assignment id: ");
+								String assignmentId = scanner.nextLine();
+								Optional<Assignment> assignmentResult = getAssignment(category, assignmentId);
+
+								if (assignmentResult.isPresent()) {
+									System.out.print(LEADER + "points earned (blank if still to come): ");
+									String earned = scanner.nextLine();
+									if (earned.isEmpty()) {
+										remaining.add(assignmentResult.get());
+									} else {
+										try {
+											projection.setEarned(assignmentResult.get(), Double.parseDouble(earned));
+										} catch (IllegalArgumentException e) {
+											System.err.println(String.format(Message.PROJECTION_ERROR.toString(), e.getMessage()));
+										}
+									}
+								}
+							}
+						}
+
+						try {
+							System.out.println(String.format("projected: %s", projection.score()));
+							if (!remaining.isEmpty()) {
+								System.out.print(LEADER + "target grade: ");
+								double target = scanner.nextDouble();
+								scanner.nextLine();
+								double needed = projection.needed(remaining, target);
+								System.out.println(String.format("needed: %s of the points possible on each remaining assignment", needed));
+								for (Assignment assignment : remaining) {
+									System.out.println(String.format("\t%s : %f of %f", assignment.getName(), needed * assignment.getPossible(), assignment.getPossible()));
+								}
+							}
+						} catch (ScoringException e) {
+							System.err.println(String.format(Message.SCORING_ERROR.toString(), e.getMessage()));
+						}
+					}
+
+				} else if (tokens[0].equals("query")) {
+
+					if (course == null) {
+						System.err.println(Message.NO_COURSE);
+					} else {
+						try {
+							String clauses = tokens.length == 2 ? tokens[1].trim() : "";
+							List<Query.Match> matches = parseQuery(course, clauses.isEmpty() ? new ArrayList<String>() : Arrays.asList(clauses.split("\\s+"))).run();
+							System.out.println(String.format("matches (%d):", matches.size()));
+							for (Query.Match match : matches) {
+								System.out.println(String.format("\t%s : %s\tscore %f\tweight %f\tlost %f", match.getAssignment().id, match.getName(), match.getScore(), match.getWeight(), match.getLost()));
+							}
+						} catch (IllegalArgumentException e) {
+							System.err.println(String.format(Message.QUERY_ERROR.toString(), e.getMessage()));
+						}
+					}
+
 				} else if (command.equals("help")) {
 
 					System.out.println("Commands:");
 					System.out.println("\topen <file>");
 					System.out.println("\tsave <file>");
+					System.out.println("\timport <file.csv|file.tsv>");
+					System.out.println("\texport <file.csv|file.tsv>");
 					System.out.println("\tnew course");
 					System.out.println("\tcourse info");
 					System.out.println("\tcategories");
@@ -424,28 +663,229 @@ public class CliClient {
 					System.out.println("\tremove category");
 					System.out.println("\tremove assignment");
 					System.out.println("\tgrade");
+					System.out.println("\tproject");
+					System.out.println("\tquery [in <category>] [where <score|weight|lost|name> <op> <value>]... [order <key> [asc|desc]] [limit <n>]");
+					System.out.println("\tstats");
 					System.out.println("\thelp");
 					System.out.println("Send EOF (Ctrl+D) to exit.");
 
+				} else if (command.equals("stats")) {
+
+					System.out.print(Metrics.report());
+
 				} else if (!command.isEmpty()) {
 					System.err.println(Message.BAD_COMMAND);
 				}
+
+				if (TIMED_COMMANDS.contains(command)) {
+					Metrics.command(command, start);
+				} else if (TIMED_COMMANDS.contains(tokens[0])) {
+					Metrics.command(tokens[0], start);
+				}
 			}
 			System.out.print(PROMPT);
 		}
+		closeJournal();
 		System.out.println();
 	}
 
+	/*
+	 * Saves to the journaled file by committing the edits recorded since the last save, and
+	 * compacts the journal into a new snapshot once it has grown past the snapshot's size. Saving
+	 * anywhere else writes a snapshot there and journals against it from then on.
+	 */
+	protected void save(Path path) throws IOException {
+		if (journal != null && journal.getFile().equals(path.toAbsolutePath().normalize())) {
+			journal.commit();
+			if (!journal.needsCompaction()) {
+				return;
+			}
+		}
+		closeJournal();
+		journal = Journal.snapshot(course, path);
+	}
+
+	// unsaved edits recorded in the journal are dropped
+	protected void closeJournal() {
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				System.err.println(String.format(Message.COURSE_WRITE.toString(), e.getMessage()));
+			}
+			journal = null;
+		}
+	}
+
+	// looks up a category by id prefix, reporting to the user if there isn't exactly one match
 	protected Optional<Category> getCategory(String id) {
-		return course.categories.values().stream()
-			.filter(category -> category.id.toString().startsWith(id))
-			.findAny();
+		try {
+			Optional<Category> result = course.findCategory(id);
+			if (!result.isPresent()) {
+				System.err.println(Message.BAD_CATEGORY);
+			}
+			return result;
+		} catch (AmbiguousIdException e) {
+			System.err.println(Message.AMBIGUOUS_CATEGORY);
+			return Optional.empty();
+		}
 	}
 
 	protected Optional<Assignment> getAssignment(Category category, String id) {
-		return category.assignments.values().stream()
-			.filter(assignment -> assignment.id.toString().startsWith(id))
-			.findAny();
+		try {
+			Optional<Assignment> result = category.findAssignment(id);
+			if (!result.isPresent()) {
+				System.err.println(Message.BAD_ASSIGNMENT);
+			}
+			return result;
+		} catch (AmbiguousIdException e) {
+			System.err.println(Message.AMBIGUOUS_ASSIGNMENT);
+			return Optional.empty();
+		}
+	}
+
+	protected int getMappedCategory(String id) {
+		try {
+			int result = mapped.findCategory(id);
+			if (result < 0) {
+				System.err.println(Message.BAD_CATEGORY);
+			}
+			return result;
+		} catch (AmbiguousIdException e) {
+			System.err.println(Message.AMBIGUOUS_CATEGORY);
+			return -1;
+		}
+	}
+
+	protected int getMappedAssignment(int category, String id) {
+		try {
+			int result = mapped.findAssignment(category, id);
+			if (result < 0) {
+				System.err.println(Message.BAD_ASSIGNMENT);
+			}
+			return result;
+		} catch (AmbiguousIdException e) {
+			System.err.println(Message.AMBIGUOUS_ASSIGNMENT);
+			return -1;
+		}
+	}
+
+	/*
+	 * Builds a query from clauses, in any order:
+	 *
+	 *   in <category id>
+	 *   where <score|weight|lost|name> <<|<=|=|>=|>|~> <value>   (~ is "contains", for names)
+	 *   order <score|weight|lost|name> [asc|desc]
+	 *   limit <count>
+	 */
+	protected static Query parseQuery(Course course, List<String> words) throws IllegalArgumentException {
+		Query query = new Query(course);
+		int i = 0;
+		while (i < words.size()) {
+			String clause = words.get(i);
+			if (clause.equals("in") && i + 1 < words.size()) {
+				try {
+					query.setCategory(course.findCategory(words.get(i + 1))
+						.orElseThrow(() -> new IllegalArgumentException(Message.BAD_CATEGORY.toString())));
+				} catch (AmbiguousIdException e) {
+					throw new IllegalArgumentException(Message.AMBIGUOUS_CATEGORY.toString());
+				}
+				i += 2;
+			} else if (clause.equals("where") && i + 3 < words.size()) {
+				Query.Key key = queryKey(words.get(i + 1));
+				Query.Comparison comparison = Query.Comparison.forSymbol(words.get(i + 2));
+				if (comparison == null) {
+					throw new IllegalArgumentException(String.format("Unknown comparison %s", words.get(i + 2)));
+				}
+				if (key == Query.Key.NAME) {
+					query.where(key, comparison, words.get(i + 3));
+				} else {
+					try {
+						query.where(key, comparison, Double.parseDouble(words.get(i + 3)));
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException(String.format("Not a number: %s", words.get(i + 3)));
+					}
+				}
+				i += 4;
+			} else if (clause.equals("order") && i + 1 < words.size()) {
+				Query.Key key = queryKey(words.get(i + 1));
+				boolean descending = false;
+				i += 2;
+				if (i < words.size() && (words.get(i).equals("asc") || words.get(i).equals("desc"))) {
+					descending = words.get(i).equals("desc");
+					i += 1;
+				}
+				query.orderBy(key, descending);
+			} else if (clause.equals("limit") && i + 1 < words.size()) {
+				try {
+					query.setLimit(Integer.parseInt(words.get(i + 1)));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(String.format("Not a count: %s", words.get(i + 1)));
+				}
+				i += 2;
+			} else {
+				throw new IllegalArgumentException(String.format("Unexpected %s", clause));
+			}
+		}
+		return query;
+	}
+
+	protected static Query.Key queryKey(String word) throws IllegalArgumentException {
+		for (Query.Key key : Query.Key.values()) {
+			if (key.name().toLowerCase().equals(word)) {
+				return key;
+			}
+		}
+		throw new IllegalArgumentException(String.format("Unknown key %s", word));
+	}
+
+	// reads a course in either the binary format or the Java serialization format
+	protected static Course readCourse(InputStream in) throws IOException, ClassNotFoundException {
+		BufferedInputStream buffered = new BufferedInputStream(in);
+		buffered.mark(4);
+		byte[] prefix = buffered.readNBytes(4);
+		buffered.reset();
+		if (BinaryFormat.isBinaryFormat(prefix)) {
+			return BinaryFormat.read(Channels.newChannel(buffered));
+		} else {
+			ObjectInputStream courseIn = new ObjectInputStream(buffered);
+			return (Course) courseIn.readObject();
+		}
+	}
+
+	protected static boolean isBinaryFormat(Path path) throws IOException {
+		try (
+			InputStream in = Files.newInputStream(path);
+		) {
+			return BinaryFormat.isBinaryFormat(in.readNBytes(4));
+		}
+	}
+
+	// binary files have their journal replayed
+	protected static Course readCourse(Path path) throws IOException, ClassNotFoundException {
+		if (isBinaryFormat(path)) {
+			Course course = BinaryFormat.read(path);
+			Journal.replay(path, course);
+			return course;
+		} else {
+			long start = Metrics.start();
+			try (
+				InputStream in = Files.newInputStream(path);
+			) {
+				Course course = readCourse(in);
+				Metrics.persisted("serialized read", Metrics.ENABLED ? Files.size(path) : 0, start);
+				return course;
+			}
+		}
+	}
+
+	// a course file mapped if it's in the binary format with no edits in its journal, otherwise read and encoded
+	protected static MappedCourse mapCourse(Path path) throws IOException, ClassNotFoundException {
+		if (isBinaryFormat(path) && !Journal.hasEdits(path)) {
+			return MappedCourse.open(path);
+		} else {
+			return MappedCourse.of(readCourse(path));
+		}
 	}
 
 	public static void main(String[] args) {
@@ -453,31 +893,136 @@ public class CliClient {
 
 			(new CliClient()).main();
 
-		} else if (args.length == 1 && args[0].equals("grade")) {
+		} else if ((args.length == 1 || args.length == 3 && args[1].equals("-j")) && args[0].equals("grade")) {
+
+			int threads = 1;
+			if (args.length == 3) {
+				try {
+					threads = Integer.parseInt(args[2]);
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				if (threads <= 0) {
+					System.err.println(String.format("Usage: java %s grade [-j threads] <file", CliClient.class.getSimpleName()));
+					return;
+				}
+			}
 
 			Course course;
-			try (
-				ObjectInputStream stream = new ObjectInputStream(System.in);
-			) {
-				course = (Course) stream.readObject();
-			} catch (IOException | ClassNotFoundException e) {
+			try {
+				course = readCourse(System.in);
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
 				System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
 				return;
 			}
 
 			try {
-				System.out.println(course.score());
+				if (threads > 1) {
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					try {
+						System.out.println((new ParallelScorer(pool)).score(course));
+					} finally {
+						pool.shutdown();
+					}
+				} else {
+					System.out.println(course.score());
+				}
 			} catch (ScoringException e) {
 				System.err.println(String.format(Message.SCORING_ERROR.toString(), e.getMessage()));
 			}
 
+		} else if (args.length == 3 && args[0].equals("convert")) {
+
+			Course course;
+			try {
+				course = readCourse(Paths.get(args[1]));
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+				return;
+			}
+
+			try {
+				BinaryFormat.write(course, Paths.get(args[2]));
+			} catch (IOException e) {
+				System.err.println(String.format(Message.COURSE_WRITE.toString(), e.getMessage()));
+			}
+
+		} else if (args.length == 3 && args[0].equals("diff")) {
+
+			try {
+				Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+				(new CourseDiff(mapCourse(Paths.get(args[1])), mapCourse(Paths.get(args[2])), out)).run();
+				out.flush();
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+			}
+
+		} else if (args.length == 5 && args[0].equals("merge")) {
+
+			CourseMerge merge;
+			Course course;
+			try {
+				merge = new CourseMerge(mapCourse(Paths.get(args[1])), mapCourse(Paths.get(args[2])), mapCourse(Paths.get(args[3])));
+				course = merge.run();
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				System.err.println(String.format(Message.COURSE_READ.toString(), e.getMessage()));
+				return;
+			}
+
+			try {
+				BinaryFormat.write(course, Paths.get(args[4]));
+			} catch (IOException e) {
+				System.err.println(String.format(Message.COURSE_WRITE.toString(), e.getMessage()));
+				return;
+			}
+			for (String conflict : merge.getConflicts()) {
+				System.out.println(conflict);
+			}
+
+		} else if (args.length == 1 && args[0].equals("batch")) {
+
+			BatchClient.main(new String[0]);
+
+		} else if (args.length >= 1 && args[0].equals("grade-batch")) {
+
+			BatchGrader.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+
+		} else if (args.length >= 1 && args[0].equals("stats")) {
+
+			GradeStatistics.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+
+		} else if (args.length >= 1 && args[0].equals("serve")) {
+
+			GradingServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+
+		} else if (args.length >= 1 && args[0].equals("daemon")) {
+
+			GradingDaemon.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+
+		} else if (args.length == 2 && args[0].equals("remote-grade")) {
+
+			GradingDaemon.grade(GradingDaemon.defaultSocket(), args[1]);
+
+		} else if (args.length == 4 && args[0].equals("remote-grade") && args[1].equals("-s")) {
+
+			GradingDaemon.grade(Paths.get(args[2]), args[3]);
+
 		} else {
 
 			String className = CliClient.class.getSimpleName();
 			System.err.print(
 				"Usage:\n" +
 				String.format("\tjava %s\n", className) +
-				String.format("\tjava %s grade <file\n", className)
+				String.format("\tjava %s grade [-j threads] <file\n", className) +
+				String.format("\tjava %s batch <commands\n", className) +
+				String.format("\tjava %s convert <serialized file> <binary file>\n", className) +
+				String.format("\tjava %s diff <before> <after>\n", className) +
+				String.format("\tjava %s merge <base> <ours> <theirs> <output>\n", className) +
+				String.format("\tjava %s grade-batch [-j threads] <file|directory>...\n", className) +
+				String.format("\tjava %s stats [-j threads] <file|directory>...\n", className) +
+				String.format("\tjava %s serve [port]\n", className) +
+				String.format("\tjava %s daemon [socket [cache size]]\n", className) +
+				String.format("\tjava %s remote-grade [-s socket] <file|->\n", className)
 			);
 
 		}
@@ -0,0 +1,186 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.metrics.Distribution;
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/*
+ * Distributions of course scores, and of category scores by category name, over many course files.
+ * Files are split into runs of CHUNK, each read and scored in turn on a worker thread into its own
+ * distributions, which are merged in input order; so no more courses are in memory at once than
+ * there are threads, and the results don't depend on the thread count.
+ */
+public class GradeStatistics {
+	protected static final int CHUNK = 16;
+
+	protected final int threads;
+	protected final Distribution courses = new Distribution();
+	protected final Map<String, Distribution> categories = new TreeMap<String, Distribution>();
+	protected final List<String> errors = new ArrayList<String>();
+	protected long files;
+
+	public GradeStatistics(int threads) throws IllegalArgumentException {
+		if (threads > 0) {
+			this.threads = threads;
+		} else {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+	}
+
+	public void collect(List<Path> files) throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			Queue<Future<GradeStatistics>> pending = new ArrayDeque<Future<GradeStatistics>>();
+			for (int start = 0; start < files.size(); start += CHUNK) {
+				if (pending.size() >= threads * 2) {
+					merge(pending.remove());
+				}
+				List<Path> chunk = files.subList(start, Math.min(files.size(), start + CHUNK));
+				pending.add(pool.submit(() -> {
+					GradeStatistics part = new GradeStatistics(1);
+					for (Path file : chunk) {
+						part.add(file);
+					}
+					return part;
+				}));
+			}
+			while (!pending.isEmpty()) {
+				merge(pending.remove());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	protected void merge(Future<GradeStatistics> result) throws InterruptedException {
+		GradeStatistics part;
+		try {
+			part = result.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		files += part.files;
+		courses.merge(part.courses);
+		for (Map.Entry<String, Distribution> entry : part.categories.entrySet()) {
+			categories.computeIfAbsent(entry.getKey(), name -> new Distribution()).merge(entry.getValue());
+		}
+		errors.addAll(part.errors);
+	}
+
+	protected void add(Path file) {
+		Course course;
+		try {
+			course = CliClient.readCourse(file);
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			// deserializing runs the model's validation, which throws unchecked exceptions on bad values
+			errors.add(String.format("%s\t%s", file, String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage())));
+			return;
+		}
+		files += 1;
+
+		try {
+			courses.record(course.score());
+		} catch (ScoringException e) {
+			courses.skip();
+		}
+		for (Category category : course.categories.values()) {
+			Distribution distribution = categories.computeIfAbsent(String.valueOf(category.getName()), name -> new Distribution());
+			try {
+				distribution.record(category.score());
+			} catch (ScoringException e) {
+				distribution.skip();
+			}
+		}
+	}
+
+	public long getFiles() {
+		return files;
+	}
+
+	public Distribution getCourses() {
+		return courses;
+	}
+
+	// by category name, sorted
+	public Map<String, Distribution> getCategories() {
+		return categories;
+	}
+
+	// read failures, one line per file
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("files %d, %d unreadable\n", files, errors.size()));
+		report.append(String.format("%-22s %8s %10s %8s %8s %8s %8s %8s\n", "", "count", "unscorable", "mean", "stddev", "p10", "p50", "p90"));
+		report.append(row("course", courses));
+		for (Map.Entry<String, Distribution> entry : categories.entrySet()) {
+			report.append(row("category " + entry.getKey(), entry.getValue()));
+		}
+		return report.toString();
+	}
+
+	protected static String row(String label, Distribution distribution) {
+		return String.format(
+			"%-22s %8d %10d %8.4f %8.4f %8.4f %8.4f %8.4f\n",
+			label,
+			distribution.getCount(),
+			distribution.getSkipped(),
+			distribution.getMean(),
+			Math.sqrt(distribution.getVariance()),
+			distribution.getQuantile(0.10),
+			distribution.getQuantile(0.50),
+			distribution.getQuantile(0.90)
+		);
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < args.length; i += 1) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[i + 1]);
+				} catch (NumberFormatException e) {
+					threads = 0;
+				}
+				i += 1;
+			} else {
+				names.add(args[i]);
+			}
+		}
+
+		if (names.isEmpty() || threads <= 0) {
+			System.err.println(String.format("Usage: java %s stats [-j threads] <file|directory>...", CliClient.class.getSimpleName()));
+			return;
+		}
+
+		try {
+			GradeStatistics statistics = new GradeStatistics(threads);
+			statistics.collect(BatchGrader.expand(names));
+			for (String error : statistics.getErrors()) {
+				System.err.println(error);
+			}
+			System.out.print(statistics.report());
+		} catch (IOException e) {
+			System.err.println(String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.storage.Journal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/*
+ * Long-running grader on a Unix domain socket, so that scripts grading many files pay for JVM
+ * startup and warmup once. Each connection sends any number of requests, one per line, and gets
+ * one response line for each:
+ *
+ *   grade <file>                   ok <score>   or   error <message>
+ *   grade-bytes <length>\n<bytes>  the same, for a course sent as bytes in either file format
+ *
+ * Courses read from files are kept in a least recently used cache, and reused as long as the
+ * file's (and its journal's) modification time and size haven't changed. The protocol is plain
+ * enough to drive with e.g. "nc -U"; remote-grade is a client for it. Anyone who can connect can
+ * have the daemon read any file its user can, so the default socket is in $XDG_RUNTIME_DIR, or
+ * else in ~/.gradecalculator, rather than in a directory shared with other users.
+ */
+public class GradingDaemon {
+	public static final int DEFAULT_CACHE_SIZE = 256;
+	// largest course grade-bytes will take, well above any real course in either format
+	public static final int MAX_COURSE_BYTES = 64 << 20;
+	// longest request line, room for any path the platform allows
+	public static final int MAX_REQUEST_LENGTH = 8192;
+
+	protected final Path socket;
+	protected final Map<Path, Cached> cache;
+	protected final ExecutorService executor = Executors.newCachedThreadPool();
+	protected ServerSocketChannel server;
+
+	protected static class Cached {
+		protected final long modified, size, journalModified, journalSize;
+		protected final Course course;
+
+		protected Cached(long[] stamp, Course course) {
+			this.modified = stamp[0];
+			this.size = stamp[1];
+			this.journalModified = stamp[2];
+			this.journalSize = stamp[3];
+			this.course = course;
+		}
+
+		protected boolean matches(long[] stamp) {
+			return modified == stamp[0] && size == stamp[1] && journalModified == stamp[2] && journalSize == stamp[3];
+		}
+	}
+
+	public GradingDaemon(Path socket, int cacheSize) throws IllegalArgumentException {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative");
+		}
+		this.socket = socket;
+		cache = new LinkedHashMap<Path, Cached>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	// in the user's runtime directory if there is one, or else a directory in their home only they can use
+	public static Path defaultSocket() {
+		String runtime = System.getenv("XDG_RUNTIME_DIR");
+		if (runtime != null && !runtime.isEmpty()) {
+			return Paths.get(runtime, "gradecalculator.sock");
+		}
+		return Paths.get(System.getProperty("user.home"), ".gradecalculator", "daemon.sock");
+	}
+
+	protected static void createDirectory(Path directory) throws IOException {
+		if (Files.isDirectory(directory)) {
+			return;
+		}
+		try {
+			Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		} catch (UnsupportedOperationException e) {
+			Files.createDirectories(directory);
+		}
+	}
+
+	// binds the socket, so that serve() can then run without failing to start
+	public void bind() throws IOException {
+		// a socket file left by a daemon that didn't shut down cleanly would make bind fail, but one still being served is left alone
+		if (Files.exists(socket) && !Files.isRegularFile(socket) && !Files.isDirectory(socket)) {
+			boolean live;
+			try (
+				SocketChannel connection = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+			) {
+				live = true;
+			} catch (IOException e) {
+				live = false;
+			}
+			if (live) {
+				throw new IOException(String.format("A daemon is already listening on %s", socket));
+			}
+			Files.delete(socket);
+		}
+		ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			server.bind(UnixDomainSocketAddress.of(socket));
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				Files.deleteIfExists(socket);
+			} catch (IOException e) {
+			}
+		}));
+		this.server = server;
+	}
+
+	public void serve() throws IOException {
+		if (server == null) {
+			bind();
+		}
+		try (
+			ServerSocketChannel server = this.server;
+		) {
+			while (true) {
+				SocketChannel connection = server.accept();
+				executor.execute(() -> handle(connection));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	protected void handle(SocketChannel connection) {
+		try (
+			connection;
+			InputStream in = new BufferedInputStream(Channels.newInputStream(connection));
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(connection));
+		) {
+			while (true) {
+				String request;
+				try {
+					request = readLine(in, MAX_REQUEST_LENGTH);
+				} catch (ProtocolException e) {
+					// the rest of the request can't be told apart from the next one, so this is the last response
+					out.write(String.format("error %s\n", e.getMessage()).getBytes(StandardCharsets.UTF_8));
+					break;
+				}
+				if (request == null) {
+					break;
+				}
+				String response;
+				long start = Metrics.start();
+				if (request.startsWith("grade ")) {
+					response = grade(Paths.get(request.substring("grade ".length())));
+					Metrics.command("daemon grade", start);
+				} else if (request.startsWith("grade-bytes ")) {
+					int length;
+					try {
+						length = Integer.parseInt(request.substring("grade-bytes ".length()));
+					} catch (NumberFormatException e) {
+						length = -1;
+					}
+					if (length < 0 || length > MAX_COURSE_BYTES) {
+						// the course that follows can't be skipped safely, so this is the last response
+						out.write(String.format("error Bad length; courses are at most %d bytes\n", MAX_COURSE_BYTES).getBytes(StandardCharsets.UTF_8));
+						break;
+					} else {
+						response = grade(in.readNBytes(length), length);
+						Metrics.command("daemon grade-bytes", start);
+					}
+				} else {
+					response = String.format("error %s", CliClient.Message.BAD_COMMAND);
+				}
+				out.write(response.getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+				if (in.available() == 0) {
+					out.flush();
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			// the client went away; nothing to report it to
+		}
+	}
+
+	protected String grade(Path file) {
+		Course course;
+		try {
+			course = load(file.toAbsolutePath().normalize());
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			return String.format("error %s", String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		}
+		return score(course);
+	}
+
+	protected String grade(byte[] bytes, int length) {
+		if (bytes.length < length) {
+			return String.format("error %s", String.format(CliClient.Message.COURSE_READ.toString(), "Unexpected end of input"));
+		}
+		try {
+			return score(CliClient.readCourse(new ByteArrayInputStream(bytes)));
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			return String.format("error %s", String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		}
+	}
+
+	protected static String score(Course course) {
+		try {
+			return String.format("ok %s", course.score());
+		} catch (ScoringException e) {
+			return String.format("error %s", String.format(CliClient.Message.SCORING_ERROR.toString(), e.getMessage()));
+		}
+	}
+
+	// the course at the path, from the cache if neither it nor its journal has changed since it was read
+	protected Course load(Path file) throws IOException, ClassNotFoundException {
+		long[] stamp = stamp(file);
+		synchronized (cache) {
+			Cached cached = cache.get(file);
+			if (cached != null && cached.matches(stamp)) {
+				return cached.course;
+			}
+		}
+		Course course = CliClient.readCourse(file);
+		synchronized (cache) {
+			cache.put(file, new Cached(stamp, course));
+		}
+		return course;
+	}
+
+	protected static long[] stamp(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long[] stamp = {attributes.lastModifiedTime().toMillis(), attributes.size(), -1, -1};
+		try {
+			BasicFileAttributes journal = Files.readAttributes(Journal.pathFor(file), BasicFileAttributes.class);
+			stamp[2] = journal.lastModifiedTime().toMillis();
+			stamp[3] = journal.size();
+		} catch (NoSuchFileException e) {
+		}
+		return stamp;
+	}
+
+	// a line of ASCII or UTF-8 ending in \n, without it, of at most maxLength bytes; null at the end of input
+	protected static String readLine(InputStream in, int maxLength) throws IOException {
+		byte[] line = new byte[256];
+		int length = 0, c;
+		while ((c = in.read()) != '\n') {
+			if (c < 0) {
+				if (length == 0) {
+					return null;
+				}
+				throw new EOFException("Unterminated request");
+			}
+			if (length == maxLength) {
+				throw new ProtocolException(String.format("Requests are at most %d bytes", maxLength));
+			}
+			if (length == line.length) {
+				line = java.util.Arrays.copyOf(line, (int) Math.min((long) length * 2, maxLength));
+			}
+			line[length] = (byte) c;
+			length += 1;
+		}
+		return new String(line, 0, length, StandardCharsets.UTF_8);
+	}
+
+	// sends one course to a daemon and prints its score
+	public static void grade(Path socket, String file) {
+		try (
+			SocketChannel connection = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+			InputStream in = new BufferedInputStream(Channels.newInputStream(connection));
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(connection));
+		) {
+			if (file.equals("-")) {
+				byte[] bytes = System.in.readAllBytes();
+				if (bytes.length > MAX_COURSE_BYTES) {
+					System.err.println(String.format("Courses are at most %d bytes", MAX_COURSE_BYTES));
+					return;
+				}
+				out.write(String.format("grade-bytes %d\n", bytes.length).getBytes(StandardCharsets.UTF_8));
+				out.write(bytes);
+			} else {
+				out.write(String.format("grade %s\n", Paths.get(file).toAbsolutePath()).getBytes(StandardCharsets.UTF_8));
+			}
+			out.flush();
+			// the daemon is the user's own, and its errors can quote a whole request
+			String response = readLine(in, Integer.MAX_VALUE);
+			if (response == null) {
+				System.err.println("No response from daemon");
+			} else if (response.startsWith("ok ")) {
+				System.out.println(response.substring("ok ".length()));
+			} else {
+				System.err.println(response.startsWith("error ") ? response.substring("error ".length()) : response);
+			}
+		} catch (IOException e) {
+			System.err.println(String.format("Error contacting daemon at %s: %s", socket, e.getMessage()));
+		}
+	}
+
+	public static void main(String[] args) {
+		Path socket = args.length >= 1 ? Paths.get(args[0]) : defaultSocket();
+		int cacheSize = DEFAULT_CACHE_SIZE;
+		try {
+			if (args.length == 2) {
+				cacheSize = Integer.parseInt(args[1]);
+			}
+		} catch (NumberFormatException e) {
+			cacheSize = -1;
+		}
+		if (args.length > 2 || cacheSize < 0) {
+			System.err.println(String.format("Usage: java %s daemon [socket [cache size]]", CliClient.class.getSimpleName()));
+			return;
+		}
+
+		try {
+			if (args.length == 0) {
+				createDirectory(socket.getParent());
+			}
+			GradingDaemon daemon = new GradingDaemon(socket, cacheSize);
+			daemon.bind();
+			System.out.println(String.format("Listening on %s", socket));
+			daemon.serve();
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,417 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Grade;
+import com.jakobcornell.gradecalculator.model.GradePublisher;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.model.AmbiguousIdException;
+import com.jakobcornell.gradecalculator.storage.Journal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Grading over HTTP on the loopback interface, for callers that would otherwise start a JVM per
+ * request. Courses are named by their file and stay resident once loaded. Responses are plain text.
+ *
+ *   GET  /courses                            resident course files, one per line
+ *   POST /load?file=<file>                   reads the file, replacing any resident copy
+ *   POST /unload?file=<file>                 drops the resident copy without saving it
+ *   GET  /score?file=<file>[&category=<id>]  the course's score, or the category's
+ *   POST /edit?file=<file>                   runs the body as batch commands against the course
+ *   POST /save?file=<file>                   writes the resident course back to its file
+ *   GET  /watch?file=<file>[&category=<id>]  the score, then each change to it, one per line
+ *
+ * score, edit and watch load the file on first use. watch streams until the client disconnects,
+ * with changes coalesced as in GradePublisher and a blank line every so often while there are none;
+ * it follows the course that was resident when it started. Edits, loads and saves of one course
+ * run one request at a time, while scores are read without waiting for them. The edit body is in
+ * the BatchClient syntax, less the commands that touch files: open, save, import and export.
+ *
+ * Any web page can send requests to a loopback port, so requests whose Origin or Host header names
+ * anything but the loopback interface are refused, which keeps out both cross-site requests and
+ * DNS rebinding.
+ */
+public class GradingServer {
+	public static final int DEFAULT_PORT = 8080;
+	public static final int KEEPALIVE_SECONDS = 15;
+
+	// BatchClient commands refused in edits, since they read or write any file the server can
+	protected static final Set<String> FILE_COMMANDS = new HashSet<String>(Arrays.asList("open", "save", "import", "export"));
+
+	// paths timed under their own names; anything else is timed as one, so clients can't add metrics at will
+	protected static final Set<String> ENDPOINTS = new HashSet<String>(Arrays.asList("/courses", "/load", "/unload", "/score", "/watch", "/edit", "/save"));
+
+	protected final HttpServer server;
+	protected final ExecutorService executor;
+	protected final Map<Path, Resident> courses = new ConcurrentHashMap<Path, Resident>();
+
+	protected static class Resident {
+		protected volatile Course course;
+
+		protected Resident(Course course) {
+			this.course = course;
+		}
+	}
+
+	public GradingServer(int port) throws IOException {
+		// small responses otherwise wait on the client's delayed ack, ~40 ms per request
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		executor = executor();
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	// a virtual thread per request where the runtime has them, otherwise a cached pool
+	protected static ExecutorService executor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	protected void handle(HttpExchange exchange) throws IOException {
+		long start = Metrics.start();
+		try {
+			String path = exchange.getRequestURI().getPath(), method = exchange.getRequestMethod();
+			Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+			checkOrigin(exchange);
+			if (path.equals("/courses")) {
+
+				expect(method, "GET");
+				StringBuilder body = new StringBuilder();
+				for (Path file : courses.keySet()) {
+					body.append(file).append('\n');
+				}
+				respond(exchange, 200, body.toString());
+
+			} else if (path.equals("/load")) {
+
+				expect(method, "POST");
+				Path file = file(query);
+				Course course = read(file);
+				Resident resident = courses.putIfAbsent(file, new Resident(course));
+				if (resident != null) {
+					// replaced in place, after any edit in progress, so the edit isn't made to a copy no longer resident
+					synchronized (resident) {
+						resident.course = course;
+					}
+				}
+				respond(exchange, 200, String.format("%s\n", course.getName()));
+
+			} else if (path.equals("/unload")) {
+
+				expect(method, "POST");
+				if (courses.remove(file(query)) == null) {
+					throw new RequestException(404, "Course not loaded");
+				}
+				respond(exchange, 200, "");
+
+			} else if (path.equals("/score")) {
+
+				expect(method, "GET");
+				Course course = resident(file(query)).course;
+				String id = query.get("category");
+				try {
+					if (id == null) {
+						respond(exchange, 200, String.format("%s\n", course.score()));
+					} else {
+						Category category = course.findCategory(id)
+							.orElseThrow(() -> new RequestException(404, CliClient.Message.BAD_CATEGORY.toString()));
+						respond(exchange, 200, String.format("%s\n", category.score()));
+					}
+				} catch (AmbiguousIdException e) {
+					throw new RequestException(400, CliClient.Message.AMBIGUOUS_CATEGORY.toString());
+				} catch (ScoringException e) {
+					throw new RequestException(422, String.format(CliClient.Message.SCORING_ERROR.toString(), e.getMessage()));
+				}
+
+			} else if (path.equals("/watch")) {
+
+				expect(method, "GET");
+				Course course = resident(file(query)).course;
+				String id = query.get("category");
+				if (id == null) {
+					watch(exchange, course.grades());
+				} else {
+					try {
+						Category category = course.findCategory(id)
+							.orElseThrow(() -> new RequestException(404, CliClient.Message.BAD_CATEGORY.toString()));
+						watch(exchange, category.grades());
+					} catch (AmbiguousIdException e) {
+						throw new RequestException(400, CliClient.Message.AMBIGUOUS_CATEGORY.toString());
+					}
+				}
+
+			} else if (path.equals("/edit")) {
+
+				expect(method, "POST");
+				Resident resident = resident(file(query));
+				String commands = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+				StringWriter output = new StringWriter();
+				boolean[] failed = {false};
+				synchronized (resident) {
+					BatchClient client = new BatchClient(output, resident.course) {
+						protected void execute(List<String> arguments) throws CommandException, IOException {
+							if (FILE_COMMANDS.contains(arguments.get(0))) {
+								throw new CommandException(String.format("%s isn't allowed over HTTP", arguments.get(0)));
+							}
+							super.execute(arguments);
+						}
+
+						protected void error(String message) {
+							output.write(String.format("error: %s\n", message));
+							failed[0] = true;
+						}
+					};
+					client.run(new StringReader(commands));
+					if (client.getCourse() != null) {
+						resident.course = client.getCourse();
+					}
+				}
+				respond(exchange, failed[0] ? 422 : 200, output.toString());
+
+			} else if (path.equals("/save")) {
+
+				expect(method, "POST");
+				Path file = file(query);
+				Resident resident = courses.get(file);
+				if (resident == null) {
+					throw new RequestException(404, "Course not loaded");
+				}
+				synchronized (resident) {
+					try {
+						Journal.snapshot(resident.course, file).close();
+					} catch (IOException e) {
+						throw new RequestException(500, String.format(CliClient.Message.COURSE_WRITE.toString(), e.getMessage()));
+					}
+				}
+				respond(exchange, 200, "");
+
+			} else {
+				throw new RequestException(404, "Not found");
+			}
+		} catch (RequestException e) {
+			respond(exchange, e.status, String.format("%s\n", e.getMessage()));
+		} catch (RuntimeException e) {
+			respond(exchange, 500, String.format("%s\n", e));
+		} finally {
+			exchange.close();
+			String path = exchange.getRequestURI().getPath();
+			Metrics.command(String.format("http %s", ENDPOINTS.contains(path) ? path : "other"), start);
+		}
+	}
+
+	protected static void checkOrigin(HttpExchange exchange) throws RequestException {
+		String host = exchange.getRequestHeaders().getFirst("Host");
+		if (host != null && !isLoopback(host.replaceFirst(":[0-9]*$", ""))) {
+			throw new RequestException(403, "Host isn't the loopback interface");
+		}
+		String origin = exchange.getRequestHeaders().getFirst("Origin");
+		if (origin != null) {
+			String originHost;
+			try {
+				originHost = (new URI(origin)).getHost();
+			} catch (URISyntaxException e) {
+				originHost = null;
+			}
+			if (originHost == null || !isLoopback(originHost)) {
+				throw new RequestException(403, "Cross-origin requests aren't allowed");
+			}
+		}
+	}
+
+	// by name only, without resolving it, so a name that merely resolves to loopback doesn't pass
+	protected static boolean isLoopback(String host) {
+		return host.equals("localhost") || host.equals("[::1]") || host.equals("::1") || host.matches("127\\.[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}");
+	}
+
+	protected Resident resident(Path file) throws RequestException {
+		Resident resident = courses.get(file);
+		if (resident == null) {
+			Resident loaded = new Resident(read(file));
+			resident = courses.putIfAbsent(file, loaded);
+			if (resident == null) {
+				resident = loaded;
+			}
+		}
+		return resident;
+	}
+
+	protected static Course read(Path file) throws RequestException {
+		try {
+			return CliClient.readCourse(file);
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			throw new RequestException(422, String.format(CliClient.Message.COURSE_READ.toString(), e.getMessage()));
+		}
+	}
+
+	protected static Path file(Map<String, String> query) throws RequestException {
+		String file = query.get("file");
+		if (file == null) {
+			throw new RequestException(400, CliClient.Message.FILENAME_MISSING.toString());
+		}
+		return Paths.get(file).toAbsolutePath().normalize();
+	}
+
+	protected static void expect(String method, String expected) throws RequestException {
+		if (!method.equals(expected)) {
+			throw new RequestException(405, String.format("Use %s", expected));
+		}
+	}
+
+	protected static Map<String, String> query(String raw) {
+		Map<String, String> query = new HashMap<String, String>();
+		if (raw != null) {
+			for (String pair : raw.split("&")) {
+				int split = pair.indexOf('=');
+				if (split >= 0) {
+					query.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+				} else if (!pair.isEmpty()) {
+					query.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+				}
+			}
+		}
+		return query;
+	}
+
+	protected static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		try (
+			OutputStream out = exchange.getResponseBody();
+		) {
+			out.write(bytes);
+		}
+	}
+
+	// writes the grade and then its updates until the client goes away
+	protected static void watch(HttpExchange exchange, GradePublisher grades) throws IOException {
+		BlockingQueue<Grade> updates = new LinkedBlockingQueue<Grade>();
+		AtomicReference<Flow.Subscription> subscription = new AtomicReference<Flow.Subscription>();
+		AtomicBoolean closed = new AtomicBoolean();
+		grades.subscribe(new Flow.Subscriber<Grade>() {
+			// subscribing completes asynchronously, possibly after the client is already gone
+			public void onSubscribe(Flow.Subscription started) {
+				subscription.set(started);
+				if (closed.get()) {
+					started.cancel();
+				} else {
+					started.request(Long.MAX_VALUE);
+				}
+			}
+
+			public void onNext(Grade grade) {
+				updates.add(grade);
+			}
+
+			public void onError(Throwable error) {
+			}
+
+			public void onComplete() {
+			}
+		});
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		try (
+			OutputStream out = exchange.getResponseBody();
+		) {
+			String line = String.format("%s\n", grades.current());
+			while (true) {
+				out.write(line.getBytes(StandardCharsets.UTF_8));
+				out.flush();
+				Grade grade = updates.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+				line = grade == null ? "\n" : String.format("%s\n", grade);
+			}
+		} catch (IOException | InterruptedException e) {
+			// the client disconnected, or the server is stopping
+		} finally {
+			closed.set(true);
+			Flow.Subscription started = subscription.get();
+			if (started != null) {
+				started.cancel();
+			}
+		}
+	}
+
+	protected static class RequestException extends Exception {
+		protected final int status;
+
+		protected RequestException(int status, String message) {
+			super(message, null, false, false);
+			this.status = status;
+		}
+	}
+
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		if (args.length == 1) {
+			try {
+				port = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				port = -1;
+			}
+		}
+		if (args.length > 1 || port < 0 || port > 65535) {
+			System.err.println(String.format("Usage: java %s serve [port]", CliClient.class.getSimpleName()));
+			return;
+		}
+
+		try {
+			GradingServer server = new GradingServer(port);
+			server.start();
+			System.out.println(String.format("Listening on http://%s:%d/", server.getAddress().getHostString(), server.getAddress().getPort()));
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+}
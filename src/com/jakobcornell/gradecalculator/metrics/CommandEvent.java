@@ -0,0 +1,22 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.jakobcornell.gradecalculator.Command")
+@Label("Command")
+@Description("A client command or request and how long it took")
+@Category("Grade Calculator")
+@StackTrace(false)
+class CommandEvent extends jdk.jfr.Event {
+	@Label("Command")
+	String command;
+
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long elapsed;
+}
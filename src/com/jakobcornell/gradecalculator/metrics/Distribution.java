@@ -0,0 +1,118 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Summary of a stream of non-negative doubles, such as scores, that can be merged with others built
+ * over other parts of the stream. The mean and variance are kept with Welford's method and combined
+ * with Chan's; quantiles come from a sparse histogram whose buckets are the values' top exponent
+ * and SUB_BITS mantissa bits, so they're accurate to within 1 part in 2^SUB_BITS and the histogram
+ * never has more buckets than there are distinct values at that precision.
+ *
+ * Not thread-safe; build one per thread and merge them.
+ */
+public class Distribution {
+	protected static final int SUB_BITS = 10;
+
+	protected final Map<Long, long[]> buckets = new HashMap<Long, long[]>();
+	protected long count, skipped;
+	protected double mean, squares;
+	protected double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+	// non-finite and negative values are counted as skipped
+	public void record(double value) {
+		if (!(value >= 0) || value == Double.POSITIVE_INFINITY) {
+			skipped += 1;
+			return;
+		}
+		count += 1;
+		double delta = value - mean;
+		mean += delta / count;
+		squares += delta * (value - mean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		buckets.computeIfAbsent(bucket(value), key -> new long[1])[0] += 1;
+	}
+
+	// counts a value that couldn't be computed
+	public void skip() {
+		skipped += 1;
+	}
+
+	public void merge(Distribution other) {
+		if (other.count > 0) {
+			long total = count + other.count;
+			double delta = other.mean - mean;
+			squares += other.squares + delta * delta * ((double) count * other.count / total);
+			mean += delta * other.count / total;
+			count = total;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			for (Map.Entry<Long, long[]> entry : other.buckets.entrySet()) {
+				buckets.computeIfAbsent(entry.getKey(), key -> new long[1])[0] += entry.getValue()[0];
+			}
+		}
+		skipped += other.skipped;
+	}
+
+	// for non-negative doubles, the bit pattern orders the same as the value
+	protected static long bucket(double value) {
+		return Double.doubleToLongBits(value + 0.0) >>> (52 - SUB_BITS);
+	}
+
+	// middle of the bucket's range of values
+	protected static double middle(long bucket) {
+		double low = Double.longBitsToDouble(bucket << (52 - SUB_BITS));
+		double high = Double.longBitsToDouble(((bucket + 1) << (52 - SUB_BITS)) - 1);
+		return low + (high - low) / 2;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	// population variance
+	public double getVariance() {
+		return count == 0 ? Double.NaN : squares / count;
+	}
+
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	// value at the quantile, between 0 and 1
+	public double getQuantile(double quantile) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long[] keys = new long[buckets.size()];
+		int i = 0;
+		for (long key : buckets.keySet()) {
+			keys[i] = key;
+			i += 1;
+		}
+		Arrays.sort(keys);
+		long target = Math.max(1, (long) Math.ceil(quantile * count)), seen = 0;
+		for (long key : keys) {
+			seen += buckets.get(key)[0];
+			if (seen >= target) {
+				return Math.max(min, Math.min(max, middle(key)));
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,81 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Concurrent histogram of non-negative longs. Values are bucketed by their highest set bit and the
+ * SUB_BITS bits after it, so percentiles are accurate to within 1 part in 2^SUB_BITS.
+ */
+public class Histogram {
+	protected static final int SUB_BITS = 3;
+	protected static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	protected final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+	protected final LongAdder count = new LongAdder(), sum = new LongAdder();
+	protected final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		value = Math.max(value, 0);
+		buckets.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		long previous = max.get();
+		while (value > previous && !max.compareAndSet(previous, value)) {
+			previous = max.get();
+		}
+	}
+
+	protected static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return ((magnitude - SUB_BITS + 1) << SUB_BITS) + sub;
+	}
+
+	// largest value that falls in the bucket
+	protected static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int magnitude = (bucket >> SUB_BITS) + SUB_BITS - 1, sub = bucket & (SUB_BUCKETS - 1);
+		long width = 1L << (magnitude - SUB_BITS);
+		return (1L << magnitude) + sub * width + width - 1;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	// upper bound on the value at the quantile, between 0 and 1
+	public long getQuantile(double quantile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(quantile * count)), seen = 0;
+		for (int i = 0; i < buckets.length(); i += 1) {
+			seen += buckets.get(i);
+			if (seen >= target) {
+				return Math.min(highest(i), getMax());
+			}
+		}
+		return getMax();
+	}
+}
@@ -0,0 +1,125 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Process-wide counters and latency histograms, also emitted as JDK Flight Recorder events.
+ * Recording is on only when the JVM is started with -Dgradecalculator.metrics=true. ENABLED is a
+ * constant, so with recording off the JIT drops the instrumentation at every call site.
+ *
+ * Call sites take a start time from start() and pass it back when the operation finishes:
+ *
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.command("open", start);
+ */
+public final class Metrics {
+	public static final boolean ENABLED = Boolean.getBoolean("gradecalculator.metrics");
+
+	protected static final Map<String, Histogram> commands = new ConcurrentHashMap<String, Histogram>();
+	protected static final Histogram scores = new Histogram();
+	protected static final LongAdder scoreFailures = new LongAdder(), unscorableCategories = new LongAdder();
+	protected static final Map<String, Histogram> persistence = new ConcurrentHashMap<String, Histogram>();
+	protected static final Map<String, LongAdder> persistenceBytes = new ConcurrentHashMap<String, LongAdder>();
+
+	private Metrics() {
+	}
+
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	public static void command(String command, long start) {
+		if (ENABLED) {
+			long elapsed = System.nanoTime() - start;
+			commands.computeIfAbsent(command, name -> new Histogram()).record(elapsed);
+			CommandEvent event = new CommandEvent();
+			if (event.isEnabled()) {
+				event.command = command;
+				event.elapsed = elapsed;
+				event.commit();
+			}
+		}
+	}
+
+	public static void scored(long start, int unscorable, boolean failed) {
+		if (ENABLED) {
+			long elapsed = System.nanoTime() - start;
+			scores.record(elapsed);
+			unscorableCategories.add(unscorable);
+			if (failed) {
+				scoreFailures.increment();
+			}
+			ScoreEvent event = new ScoreEvent();
+			if (event.isEnabled()) {
+				event.elapsed = elapsed;
+				event.unscorable = unscorable;
+				event.failed = failed;
+				event.commit();
+			}
+		}
+	}
+
+	// operation names the format and direction, e.g. "binary write"
+	public static void persisted(String operation, long bytes, long start) {
+		if (ENABLED) {
+			long elapsed = System.nanoTime() - start;
+			persistenceBytes.computeIfAbsent(operation, name -> new LongAdder()).add(bytes);
+			persistence.computeIfAbsent(operation, name -> new Histogram()).record(elapsed);
+			PersistenceEvent event = new PersistenceEvent();
+			if (event.isEnabled()) {
+				event.operation = operation;
+				event.bytes = bytes;
+				event.elapsed = elapsed;
+				event.commit();
+			}
+		}
+	}
+
+	public static String report() {
+		if (!ENABLED) {
+			return "Metrics are off. Start the JVM with -Dgradecalculator.metrics=true to record them.\n";
+		}
+		StringBuilder report = new StringBuilder();
+		report.append("commands:\n");
+		for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(commands).entrySet()) {
+			report.append(String.format("\t%-22s %s\n", entry.getKey(), summary(entry.getValue())));
+		}
+		report.append("scoring:\n");
+		report.append(String.format("\t%-22s %s\n", "course score", summary(scores)));
+		report.append(String.format("\t%-22s %d\n", "failures", scoreFailures.sum()));
+		report.append(String.format("\t%-22s %d\n", "unscorable categories", unscorableCategories.sum()));
+		report.append("persistence:\n");
+		for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(persistence).entrySet()) {
+			long bytes = persistenceBytes.get(entry.getKey()).sum();
+			report.append(String.format("\t%-22s %s bytes %d\n", entry.getKey(), summary(entry.getValue()), bytes));
+		}
+		return report.toString();
+	}
+
+	protected static String summary(Histogram histogram) {
+		return String.format(
+			"count %d mean %s p50 %s p99 %s max %s",
+			histogram.getCount(),
+			time(histogram.getMean()),
+			time(histogram.getQuantile(0.50)),
+			time(histogram.getQuantile(0.99)),
+			time(histogram.getMax())
+		);
+	}
+
+	protected static String time(double nanoseconds) {
+		if (nanoseconds < 1e3) {
+			return String.format("%.0fns", nanoseconds);
+		} else if (nanoseconds < 1e6) {
+			return String.format("%.1fus", nanoseconds / 1e3);
+		} else if (nanoseconds < 1e9) {
+			return String.format("%.1fms", nanoseconds / 1e6);
+		} else {
+			return String.format("%.2fs", nanoseconds / 1e9);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.jakobcornell.gradecalculator.Persistence")
+@Label("Persistence")
+@Description("A course read or written, in one of the storage formats")
+@Category("Grade Calculator")
+@StackTrace(false)
+class PersistenceEvent extends jdk.jfr.Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long elapsed;
+}
@@ -0,0 +1,25 @@
+package com.jakobcornell.gradecalculator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.jakobcornell.gradecalculator.Score")
+@Label("Score")
+@Description("A course scored, with the number of categories left out as unscorable")
+@Category("Grade Calculator")
+@StackTrace(false)
+class ScoreEvent extends jdk.jfr.Event {
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long elapsed;
+
+	@Label("Unscorable Categories")
+	int unscorable;
+
+	@Label("Failed")
+	boolean failed;
+}
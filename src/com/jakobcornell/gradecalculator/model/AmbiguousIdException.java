@@ -0,0 +1,11 @@
+package com.jakobcornell.gradecalculator.model;
+
+public class AmbiguousIdException extends Exception {
+	public AmbiguousIdException() {
+		super();
+	}
+
+	public AmbiguousIdException(String message) {
+		super(message);
+	}
+}
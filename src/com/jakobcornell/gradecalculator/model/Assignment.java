@@ -6,25 +6,44 @@ public class Assignment implements java.io.Serializable {
 	private static final long serialVersionUID = 0;
 
 	public final UUID id;
-	public String name;
-	protected double weight;
-	protected double earned, possible;
+
+	/*
+	 * Changed only under the category's lock (see update), and volatile so that the getters can
+	 * read any one of them without it. Reading more than one at a time takes the lock; see points.
+	 */
+	protected volatile String name;
+	protected volatile double weight;
+	protected volatile double earned, possible;
+
+	protected transient volatile Category category;
 
 	public Assignment(String name, double weight, double earned, double possible) throws IllegalArgumentException {
-		id = UUID.randomUUID();
-		this.name = name;
+		this(UUID.randomUUID(), name, weight, earned, possible);
+	}
+
+	public Assignment(UUID id, String name, double weight, double earned, double possible) throws IllegalArgumentException {
+		this.id = id;
+		this.name = Names.share(name);
 		setWeight(weight);
 		setEarned(earned);
 		setPossible(possible);
 	}
 
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		update(() -> this.name = Names.share(name));
+	}
+
 	public double getWeight() {
 		return weight;
 	}
 
 	public void setWeight(double weight) throws IllegalArgumentException {
 		if (weight >= 0) {
-			this.weight = weight;
+			update(() -> this.weight = weight);
 		} else {
 			throw new IllegalArgumentException("Weights cannot be negative");
 		}
@@ -36,7 +55,7 @@ public class Assignment implements java.io.Serializable {
 
 	public void setEarned(double earned) throws IllegalArgumentException {
 		if (earned >= 0) {
-			this.earned = earned;
+			update(() -> this.earned = earned);
 		} else {
 			throw new IllegalArgumentException("Scores cannot be negative");
 		}
@@ -48,15 +67,59 @@ public class Assignment implements java.io.Serializable {
 
 	public void setPossible(double possible) throws IllegalArgumentException {
 		if (possible >= 0) {
-			this.possible = possible;
+			update(() -> this.possible = possible);
 		} else {
 			throw new IllegalArgumentException("Scores cannot be negative");
 		}
 	}
 
+	/*
+	 * Makes a change to the values under the category's lock, keeping the category's sums current.
+	 * Without a category the change is made under the assignment's own lock, which a category takes
+	 * to adopt it, so the values it counts are the ones it snapshots.
+	 */
+	protected void update(Runnable change) {
+		Category owner = category;
+		while (true) {
+			synchronized (owner != null ? owner : this) {
+				if (category == owner) {
+					if (owner == null) {
+						change.run();
+					} else {
+						owner.tally(weight, earned, possible, -1);
+						owner.changing(this);
+						change.run();
+						owner.tally(weight, earned, possible, 1);
+						owner.changed(this);
+					}
+					return;
+				}
+			}
+			owner = category;
+		}
+	}
+
+	// earned and possible points as of one change, read under the same lock as update
+	protected double[] points() {
+		Category owner = category;
+		while (true) {
+			synchronized (owner != null ? owner : this) {
+				if (category == owner) {
+					return new double[] {earned, possible};
+				}
+			}
+			owner = category;
+		}
+	}
+
+	public boolean isScorable() {
+		return possible > 0;
+	}
+
 	public double score() throws ScoringException {
-		if (possible > 0) {
-			return earned / possible;
+		double[] points = points();
+		if (points[1] > 0) {
+			return points[0] / points[1];
 		} else {
 			throw new ScoringException(String.format("Assignment %s has 0 possible points", id.toString()));
 		}
@@ -0,0 +1,30 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.UUID;
+
+// an assignment as of one version of its course; see CourseSnapshot
+public class AssignmentSnapshot {
+	public final UUID id;
+	public final String name;
+	public final double weight, earned, possible;
+
+	AssignmentSnapshot(Assignment assignment) {
+		id = assignment.id;
+		name = assignment.name;
+		weight = assignment.weight;
+		earned = assignment.earned;
+		possible = assignment.possible;
+	}
+
+	public boolean isScorable() {
+		return possible > 0;
+	}
+
+	public double score() throws ScoringException {
+		if (isScorable()) {
+			return earned / possible;
+		} else {
+			throw new ScoringException(String.format("Assignment %s has 0 possible points", id.toString()));
+		}
+	}
+}
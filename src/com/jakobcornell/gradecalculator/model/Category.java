@@ -1,76 +1,379 @@
 package com.jakobcornell.gradecalculator.model;
 
 import java.util.Collections;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class Category implements java.io.Serializable {
 	private static final long serialVersionUID = 0;
 
 	public final UUID id;
 	public final Map<UUID, Assignment> assignments;
-	public String name;
-	public boolean useWeights;
-	protected double weight;
-
-	public Category(String name, double weight, boolean useWeights) {
-		id = UUID.randomUUID();
-		assignments = new HashMap<UUID, Assignment>();
-		this.name = name;
+	// set under the lock, and volatile so that the getters don't need it
+	protected volatile String name;
+	protected volatile boolean useWeights;
+	protected volatile double weight;
+
+	protected transient volatile Course course;
+
+	/*
+	 * Running sums over the assignments, kept current by the assignment map and the assignments'
+	 * setters. Assignments with infinite values or terms can't be added and subtracted back out, so
+	 * they're only counted (as irregular), and any category containing one is scored by walking it.
+	 *
+	 * The sums, the assignment map and the assignments' values are guarded by the category's lock.
+	 */
+	protected transient int count, positive, irregular;
+	protected final transient Sum earnedSum = new Sum(), possibleSum = new Sum();
+	protected final transient Sum weightSum = new Sum(), weightedScoreSum = new Sum();
+
+	/*
+	 * The score and weight as of the last rescore, replaced whole so that other threads can read a
+	 * consistent pair without the lock. tallied is the report counted in the course's sums, guarded
+	 * by the course's lock.
+	 */
+	protected transient volatile Report report = Report.NONE;
+	transient Report tallied;
+
+	/*
+	 * The category as of the last rescore, for lock-free readers. Snapshots cost an allocation or
+	 * two per edit, so they're only kept once asked for, by snapshot() or by the course's. versions
+	 * holds the assignments' snapshots for the next one; it and tracking are guarded by the lock.
+	 */
+	protected transient volatile CategorySnapshot snapshot;
+	protected transient PersistentMap<AssignmentSnapshot> versions;
+	protected transient boolean tracking;
+
+	// created by the first call to grades()
+	protected transient volatile GradePublisher grades;
+
+	// the assignments sorted on each key queries have been ordered by, guarded by the lock; see Query
+	protected transient EnumMap<Query.Key, TreeSet<Assignment>> indexes;
+
+	public Category(String name, double weight, boolean useWeights) throws IllegalArgumentException {
+		this(UUID.randomUUID(), name, weight, useWeights, 0);
+	}
+
+	public Category(UUID id, String name, double weight, boolean useWeights, int expectedAssignments) throws IllegalArgumentException {
+		this.id = id;
+		assignments = new ChildMap<Assignment>(expectedAssignments, this) {
+			protected UUID idOf(Assignment assignment) {
+				return assignment.id;
+			}
+
+			protected void adopt(Assignment assignment) throws IllegalArgumentException {
+				if (assignment.category != null) {
+					throw new IllegalArgumentException("Assignment already belongs to a category");
+				}
+			}
+
+			protected void added(Assignment assignment) {
+				synchronized (assignment) {
+					// waits out a change made while the assignment had no category; see Assignment.update
+					assignment.category = Category.this;
+				}
+				tally(assignment.weight, assignment.earned, assignment.possible, 1);
+				if (tracking) {
+					versions = versions.with(assignment.id, new AssignmentSnapshot(assignment));
+				}
+				Category.this.index(assignment);
+				rescore();
+			}
+
+			protected void removed(Assignment assignment) {
+				assignment.category = null;
+				tally(assignment.weight, assignment.earned, assignment.possible, -1);
+				if (tracking) {
+					versions = versions.without(assignment.id);
+				}
+				Category.this.unindex(assignment);
+				rescore();
+			}
+		};
+		this.name = Names.share(name);
 		this.useWeights = useWeights;
 		setWeight(weight);
 	}
 
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		synchronized (this) {
+			this.name = Names.share(name);
+			rescore();
+		}
+	}
+
 	public double getWeight() {
 		return weight;
 	}
 
 	public void setWeight(double weight) throws IllegalArgumentException {
 		if (weight >= 0) {
-			this.weight = weight;
+			synchronized (this) {
+				this.weight = weight;
+				rescore();
+			}
 		} else {
 			throw new IllegalArgumentException("Weights cannot be negative");
 		}
 	}
 
-	public double score() throws ScoringException {
-		if (useWeights) {
-			List<Double> weights = assignments.values().stream()
-				.map(Assignment::getWeight)
-				.collect(Collectors.toList());
+	public boolean getUseWeights() {
+		return useWeights;
+	}
 
-			List<Double> scores = new ArrayList<Double>();
+	public void setUseWeights(boolean useWeights) {
+		synchronized (this) {
+			this.useWeights = useWeights;
+			if (indexes != null) {
+				// lost points are measured differently with weights
+				indexes.remove(Query.Key.LOST);
+			}
+			rescore();
+		}
+	}
+
+	public Optional<Assignment> findAssignment(String prefix) throws AmbiguousIdException {
+		return ((ChildMap<Assignment>) assignments).find(prefix);
+	}
+
+	void tally(double weight, double earned, double possible, int sign) {
+		double term = possible > 0 ? weight * (earned / possible) : 0;
+		count += sign;
+		if (Double.isInfinite(weight) || Double.isInfinite(earned) || Double.isInfinite(possible) || Double.isInfinite(term)) {
+			irregular += sign;
+		} else if (sign > 0) {
+			earnedSum.add(earned);
+			possibleSum.add(possible);
+			weightSum.add(weight);
+			weightedScoreSum.add(term);
+			if (possible > 0) {
+				positive += 1;
+			}
+		} else {
+			earnedSum.subtract(earned);
+			possibleSum.subtract(possible);
+			weightSum.subtract(weight);
+			weightedScoreSum.subtract(term);
+			if (possible > 0) {
+				positive -= 1;
+			}
+		}
+	}
+
+	// called with the lock held, before the assignment's values change
+	void changing(Assignment assignment) {
+		unindex(assignment);
+	}
+
+	// called with the lock held, after the assignment's values change
+	void changed(Assignment assignment) {
+		if (tracking) {
+			versions = versions.with(assignment.id, new AssignmentSnapshot(assignment));
+		}
+		index(assignment);
+		rescore();
+	}
+
+	// called with the lock held; builds the index on the key if there isn't one yet
+	NavigableSet<Assignment> index(Query.Key key) {
+		if (indexes == null) {
+			indexes = new EnumMap<Query.Key, TreeSet<Assignment>>(Query.Key.class);
+		}
+		TreeSet<Assignment> index = indexes.get(key);
+		if (index == null) {
+			index = new TreeSet<Assignment>(Query.comparator(key, useWeights));
+			index.addAll(assignments.values());
+			indexes.put(key, index);
+		}
+		return index;
+	}
+
+	protected void index(Assignment assignment) {
+		if (indexes != null) {
+			for (TreeSet<Assignment> index : indexes.values()) {
+				index.add(assignment);
+			}
+		}
+	}
+
+	// the index is sorted on the assignment's values, so this must come before they change
+	protected void unindex(Assignment assignment) {
+		if (indexes != null) {
+			for (TreeSet<Assignment> index : indexes.values()) {
+				index.remove(assignment);
+			}
+		}
+	}
+
+	// called with the lock held; starts keeping snapshots if they aren't kept yet
+	void track() {
+		if (!tracking) {
+			PersistentMap<AssignmentSnapshot> versions = PersistentMap.empty();
 			for (Assignment assignment : assignments.values()) {
-				scores.add(assignment.score());
+				versions = versions.with(assignment.id, new AssignmentSnapshot(assignment));
 			}
+			this.versions = versions;
+			tracking = true;
+		}
+		rescore();
+	}
 
-			double totalWeight = weights.stream()
-				.mapToDouble(Double::valueOf)
-				.sum();
+	// called with the lock held
+	void rescore() {
+		Course owner = course;
+		if (!tracking && owner != null && owner.tracking) {
+			track();
+			return;
+		}
 
-			double score = 0;
-			for (int i = 0; i < weights.size(); i += 1) {
-				score += scores.get(i) * weights.get(i) / totalWeight;
+		if (irregular > 0) {
+			report = walk();
+		} else if (useWeights) {
+			report = new Report(positive == count, count == 0 ? 0 : weightedScoreSum.value() / weightSum.value(), weight);
+		} else {
+			report = new Report(positive > 0, earnedSum.value() / possibleSum.value(), weight);
+		}
+		if (tracking) {
+			snapshot = new CategorySnapshot(this, versions, report);
+		}
+		GradePublisher grades = this.grades;
+		if (grades != null) {
+			grades.changed();
+		}
+
+		if (owner != null) {
+			owner.reconcile(this);
+		}
+	}
+
+	protected Report walk() {
+		return walk(Collections.<Assignment, Double>emptyMap());
+	}
+
+	// walks the assignments, taking earned points from the map for the ones in it
+	protected Report walk(Map<Assignment, Double> projected) {
+		double earned = 0, possible = 0, totalWeight = 0, weightedScore = 0;
+		boolean zero = false;
+		for (Assignment assignment : assignments.values()) {
+			double assignmentEarned = projected.getOrDefault(assignment, assignment.earned);
+			earned += assignmentEarned;
+			possible += assignment.possible;
+			totalWeight += assignment.weight;
+			if (assignment.possible > 0) {
+				weightedScore += assignment.weight * (assignmentEarned / assignment.possible);
+			} else {
+				zero = true;
 			}
+		}
 
-			return score;
+		if (useWeights) {
+			return new Report(!zero, assignments.isEmpty() ? 0 : weightedScore / totalWeight, weight);
 		} else {
-			double earned = assignments.values().stream()
-				.mapToDouble(Assignment::getEarned)
-				.sum();
-			double possible = assignments.values().stream()
-				.mapToDouble(Assignment::getPossible)
-				.sum();
+			return new Report(possible > 0, earned / possible, weight);
+		}
+	}
 
-			if (possible > 0) {
-				return earned / possible;
+	/*
+	 * The report the category would have if its assignments in the map had earned the points mapped
+	 * to them instead, worked out from the running sums without changing anything. Assignments that
+	 * aren't in the category are ignored.
+	 */
+	Report project(Map<Assignment, Double> projected) {
+		synchronized (this) {
+			double earned = earnedSum.value(), weightedScore = weightedScoreSum.value();
+			boolean regular = irregular == 0;
+			for (Map.Entry<Assignment, Double> entry : projected.entrySet()) {
+				Assignment assignment = entry.getKey();
+				if (assignment.category == this) {
+					double assignmentEarned = entry.getValue();
+					double term = assignment.possible > 0 ? assignment.weight * (assignmentEarned / assignment.possible) : 0;
+					if (Double.isInfinite(assignmentEarned) || Double.isInfinite(term)) {
+						regular = false;
+					} else if (regular) {
+						earned += assignmentEarned - assignment.earned;
+						weightedScore += term - (assignment.possible > 0 ? assignment.weight * (assignment.earned / assignment.possible) : 0);
+					}
+				}
+			}
+
+			if (!regular) {
+				return walk(projected);
+			} else if (useWeights) {
+				return new Report(positive == count, count == 0 ? 0 : weightedScore / weightSum.value(), weight);
 			} else {
-				throw new ScoringException(String.format("Category %s has 0 total possible points", id.toString()));
+				return new Report(positive > 0, earned / possibleSum.value(), weight);
+			}
+		}
+	}
+
+	public boolean isScorable() {
+		return report.scorable;
+	}
+
+	public double score() throws ScoringException {
+		Report report = this.report;
+		if (report.scorable) {
+			return report.score;
+		} else if (useWeights) {
+			throw new ScoringException(String.format("Category %s has an assignment with 0 possible points", id.toString()));
+		} else {
+			throw new ScoringException(String.format("Category %s has 0 total possible points", id.toString()));
+		}
+	}
+
+	// the category's grade changes, coalesced; see GradePublisher
+	public GradePublisher grades() {
+		GradePublisher grades = this.grades;
+		if (grades == null) {
+			synchronized (this) {
+				if (this.grades == null) {
+					this.grades = new GradePublisher(() -> {
+						Report report = this.report;
+						return new Grade(report.scorable, report.score);
+					});
+				}
+				grades = this.grades;
 			}
 		}
+		return grades;
+	}
+
+	// the category as of its last change; only the first call takes the lock
+	public CategorySnapshot snapshot() {
+		CategorySnapshot snapshot = this.snapshot;
+		if (snapshot == null) {
+			synchronized (this) {
+				track();
+				snapshot = this.snapshot;
+			}
+		}
+		return snapshot;
+	}
+
+	protected Object readResolve() throws java.io.ObjectStreamException {
+		Category category = new Category(id, name, weight, useWeights, assignments.size());
+		category.assignments.putAll(assignments);
+		return category;
+	}
+
+	static final class Report {
+		static final Report NONE = new Report(false, 0, 0);
+
+		final boolean scorable;
+		final double score, weight;
+
+		Report(boolean scorable, double score, double weight) {
+			this.scorable = scorable;
+			this.score = score;
+			this.weight = weight;
+		}
 	}
 }
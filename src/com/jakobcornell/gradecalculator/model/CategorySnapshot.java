@@ -0,0 +1,37 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.Map;
+import java.util.UUID;
+
+// a category as of one version of its course; see CourseSnapshot
+public class CategorySnapshot {
+	public final UUID id;
+	public final String name;
+	public final double weight;
+	public final boolean useWeights;
+	public final Map<UUID, AssignmentSnapshot> assignments;
+	protected final Category.Report report;
+
+	CategorySnapshot(Category category, PersistentMap<AssignmentSnapshot> assignments, Category.Report report) {
+		id = category.id;
+		name = category.name;
+		weight = category.weight;
+		useWeights = category.useWeights;
+		this.assignments = assignments;
+		this.report = report;
+	}
+
+	public boolean isScorable() {
+		return report.scorable;
+	}
+
+	public double score() throws ScoringException {
+		if (report.scorable) {
+			return report.score;
+		} else if (useWeights) {
+			throw new ScoringException(String.format("Category %s has an assignment with 0 possible points", id.toString()));
+		} else {
+			throw new ScoringException(String.format("Category %s has 0 total possible points", id.toString()));
+		}
+	}
+}
@@ -0,0 +1,578 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Map from id to child model object which reports every insertion and removal to its owner, so the
+ * owner can keep its cached score sums current. Also keeps the children sorted by id for prefix
+ * lookups. Serializes as a plain HashMap; owners rebuild the map from it in readResolve.
+ *
+ * Every operation holds the owner's lock, so added and removed run under it too. As with
+ * Collections.synchronizedMap, callers iterating over a view must hold the lock themselves.
+ *
+ * Built for categories of millions of assignments, so nothing is allocated per child: the children
+ * sit in an open-addressing table keyed by their own ids' bits, and the index for prefix lookups is
+ * an array of them in id order, only built once a lookup needs it.
+ */
+abstract class ChildMap<V> extends AbstractMap<UUID, V> implements java.io.Serializable {
+	private static final long serialVersionUID = 0;
+
+	protected static final int MINIMUM_CAPACITY = 8;
+
+	// linear probing, at most three quarters full; an empty slot is null
+	protected Object[] table;
+	protected int size;
+
+	/*
+	 * The index: sorted holds children in id order, and recent the children added since, in no
+	 * order, until there are enough of them to merge in. A removed child stays in sorted, as stale,
+	 * until the next merge; it's told apart from a live one by looking its id up in the table, and
+	 * if it's put back before then, its entry is live again rather than being added to recent.
+	 * sorted is null until the first lookup.
+	 */
+	protected Object[] sorted, recent;
+	protected int sortedCount, recentCount, stale;
+
+	protected final Object lock;
+
+	protected ChildMap(int expectedSize, Object lock) {
+		this.lock = lock;
+		table = new Object[capacityFor(expectedSize)];
+	}
+
+	protected abstract UUID idOf(V child);
+
+	// called before a child is inserted; throws if the child can't be adopted
+	protected abstract void adopt(V child) throws IllegalArgumentException;
+
+	protected abstract void added(V child);
+
+	protected abstract void removed(V child);
+
+	protected static int capacityFor(int expectedSize) {
+		long needed = Math.max(MINIMUM_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+		return needed >= 1 << 30 ? 1 << 30 : Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	protected static int slot(long msb, long lsb, int mask) {
+		long hash = (msb ^ lsb) * 0x9e3779b97f4a7c15L;
+		return (int) (hash >>> 32) & mask;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected V child(Object slot) {
+		return (V) slot;
+	}
+
+	// the table position holding the id, or -1
+	protected int position(long msb, long lsb) {
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		for (int i = slot(msb, lsb, mask); table[i] != null; i = (i + 1) & mask) {
+			UUID id = idOf(child(table[i]));
+			if (id.getLeastSignificantBits() == lsb && id.getMostSignificantBits() == msb) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	protected int position(Object key) {
+		if (key instanceof UUID) {
+			UUID id = (UUID) key;
+			return position(id.getMostSignificantBits(), id.getLeastSignificantBits());
+		} else {
+			return -1;
+		}
+	}
+
+	// places a child whose id isn't in the table
+	protected void insert(V child) {
+		if (size + 1 > table.length / 4 * 3) {
+			resize(table.length * 2);
+		}
+		place(table, child);
+		size += 1;
+	}
+
+	protected void place(Object[] table, V child) {
+		UUID id = idOf(child);
+		int mask = table.length - 1;
+		int i = slot(id.getMostSignificantBits(), id.getLeastSignificantBits(), mask);
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+		table[i] = child;
+	}
+
+	protected void resize(int capacity) {
+		Object[] resized = new Object[capacity];
+		for (Object slot : table) {
+			if (slot != null) {
+				place(resized, child(slot));
+			}
+		}
+		table = resized;
+	}
+
+	// empties a table position, moving later children of the same run back so probes still find them
+	protected void delete(int position) {
+		Object[] table = this.table;
+		int mask = table.length - 1, hole = position;
+		table[hole] = null;
+		for (int i = (hole + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+			UUID id = idOf(child(table[i]));
+			int home = slot(id.getMostSignificantBits(), id.getLeastSignificantBits(), mask);
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				table[hole] = table[i];
+				table[i] = null;
+				hole = i;
+			}
+		}
+		size -= 1;
+	}
+
+	protected boolean isLive(V child) {
+		UUID id = idOf(child);
+		int position = position(id.getMostSignificantBits(), id.getLeastSignificantBits());
+		return position >= 0 && table[position] == child;
+	}
+
+	protected void attach(V child) {
+		if (sorted != null) {
+			int i = indexOf(child);
+			if (i >= 0 && sorted[i] == child) {
+				// put back after being removed: its stale entry in sorted is live again
+				stale -= 1;
+				added(child);
+				return;
+			}
+			if (recentCount == recent.length) {
+				recent = Arrays.copyOf(recent, recentCount * 2);
+			}
+			recent[recentCount] = child;
+			recentCount += 1;
+			if (recentCount > Math.max(256, 4 * (int) Math.sqrt(sortedCount))) {
+				merge();
+			}
+		}
+		added(child);
+	}
+
+	protected void detach(V child) {
+		if (sorted != null) {
+			int i = recentCount - 1;
+			while (i >= 0 && recent[i] != child) {
+				i -= 1;
+			}
+			if (i >= 0) {
+				recentCount -= 1;
+				recent[i] = recent[recentCount];
+				recent[recentCount] = null;
+			} else {
+				stale += 1;
+				if (stale > 256 && stale > sortedCount / 2) {
+					merge();
+				}
+			}
+		}
+		removed(child);
+	}
+
+	// position in sorted of the child's id, or -1; sorted never holds an id twice
+	protected int indexOf(V child) {
+		int low = 0, high = sortedCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1, order = compare(sorted[middle], child);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	protected int compare(Object a, Object b) {
+		return IdPrefix.ORDER.compare(idOf(child(a)), idOf(child(b)));
+	}
+
+	// builds the index from the table
+	protected void index() {
+		sorted = new Object[Math.max(MINIMUM_CAPACITY, size)];
+		sortedCount = 0;
+		for (Object slot : table) {
+			if (slot != null) {
+				sorted[sortedCount] = slot;
+				sortedCount += 1;
+			}
+		}
+		Arrays.sort(sorted, 0, sortedCount, this::compare);
+		recent = new Object[MINIMUM_CAPACITY];
+		recentCount = 0;
+		stale = 0;
+	}
+
+	// folds recent into sorted and drops stale children
+	protected void merge() {
+		Arrays.sort(recent, 0, recentCount, this::compare);
+		Object[] merged = new Object[Math.max(MINIMUM_CAPACITY, sortedCount - stale + recentCount)];
+		int count = 0, i = 0, j = 0;
+		while (i < sortedCount || j < recentCount) {
+			Object next;
+			if (j == recentCount || (i < sortedCount && compare(sorted[i], recent[j]) <= 0)) {
+				next = sorted[i];
+				i += 1;
+				if (stale > 0 && !isLive(child(next))) {
+					continue;
+				}
+			} else {
+				next = recent[j];
+				j += 1;
+			}
+			merged[count] = next;
+			count += 1;
+		}
+		sorted = merged;
+		sortedCount = count;
+		Arrays.fill(recent, 0, recentCount, null);
+		recentCount = 0;
+		stale = 0;
+	}
+
+	// the only child whose id's string form starts with the prefix, if any
+	Optional<V> find(String prefix) throws AmbiguousIdException {
+		synchronized (lock) {
+			IdPrefix range = IdPrefix.parse(prefix);
+			if (range == null) {
+				return Optional.empty();
+			}
+			if (sorted == null) {
+				index();
+			}
+
+			V found = null;
+			int low = 0, high = sortedCount;
+			UUID first = range.low();
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (IdPrefix.ORDER.compare(idOf(child(sorted[middle])), first) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			for (int i = low; i < sortedCount && range.matches(idOf(child(sorted[i]))); i += 1) {
+				if (stale == 0 || isLive(child(sorted[i]))) {
+					found = unique(found, child(sorted[i]), prefix);
+				}
+			}
+			for (int i = 0; i < recentCount; i += 1) {
+				if (range.matches(idOf(child(recent[i])))) {
+					found = unique(found, child(recent[i]), prefix);
+				}
+			}
+			return Optional.ofNullable(found);
+		}
+	}
+
+	protected V unique(V found, V match, String prefix) throws AmbiguousIdException {
+		if (found != null) {
+			throw new AmbiguousIdException(String.format("More than one id starts with %s", prefix));
+		}
+		return match;
+	}
+
+	// children in id order
+	Collection<V> sorted() {
+		synchronized (lock) {
+			if (sorted == null) {
+				index();
+			} else if (recentCount > 0 || stale > 0) {
+				merge();
+			}
+			@SuppressWarnings("unchecked")
+			List<V> children = (List<V>) Arrays.asList(Arrays.copyOf(sorted, sortedCount));
+			return Collections.unmodifiableList(children);
+		}
+	}
+
+	public int size() {
+		synchronized (lock) {
+			return size;
+		}
+	}
+
+	public boolean isEmpty() {
+		synchronized (lock) {
+			return size == 0;
+		}
+	}
+
+	public boolean containsKey(Object key) {
+		synchronized (lock) {
+			return position(key) >= 0;
+		}
+	}
+
+	public boolean containsValue(Object value) {
+		synchronized (lock) {
+			for (Object slot : table) {
+				if (slot != null && slot.equals(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public V get(Object key) {
+		synchronized (lock) {
+			int position = position(key);
+			return position >= 0 ? child(table[position]) : null;
+		}
+	}
+
+	public V put(UUID key, V value) throws IllegalArgumentException {
+		synchronized (lock) {
+			if (!key.equals(idOf(value))) {
+				throw new IllegalArgumentException("Key does not match id");
+			}
+			int position = position(key);
+			V previous = position >= 0 ? child(table[position]) : null;
+			if (previous != value) {
+				adopt(value);
+				if (previous != null) {
+					table[position] = value;
+					detach(previous);
+				} else {
+					insert(value);
+				}
+				attach(value);
+			}
+			return previous;
+		}
+	}
+
+	public V remove(Object key) {
+		synchronized (lock) {
+			int position = position(key);
+			if (position < 0) {
+				return null;
+			}
+			V previous = child(table[position]);
+			delete(position);
+			detach(previous);
+			return previous;
+		}
+	}
+
+	public void clear() {
+		synchronized (lock) {
+			Object[] children = table;
+			table = new Object[MINIMUM_CAPACITY];
+			size = 0;
+			sorted = recent = null;
+			sortedCount = recentCount = stale = 0;
+			for (Object slot : children) {
+				if (slot != null) {
+					removed(child(slot));
+				}
+			}
+		}
+	}
+
+	public Set<UUID> keySet() {
+		return new AbstractSet<UUID>() {
+			public Iterator<UUID> iterator() {
+				return new ChildIterator<UUID>() {
+					protected UUID extract(V child) {
+						return idOf(child);
+					}
+				};
+			}
+
+			public int size() {
+				return ChildMap.this.size();
+			}
+
+			public boolean contains(Object key) {
+				return ChildMap.this.containsKey(key);
+			}
+
+			public boolean remove(Object key) {
+				return ChildMap.this.remove(key) != null;
+			}
+
+			public void clear() {
+				ChildMap.this.clear();
+			}
+		};
+	}
+
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new ChildIterator<V>() {
+					protected V extract(V child) {
+						return child;
+					}
+				};
+			}
+
+			public int size() {
+				return ChildMap.this.size();
+			}
+
+			public boolean contains(Object value) {
+				return ChildMap.this.containsValue(value);
+			}
+
+			public void clear() {
+				ChildMap.this.clear();
+			}
+		};
+	}
+
+	public Set<Map.Entry<UUID, V>> entrySet() {
+		return new AbstractSet<Map.Entry<UUID, V>>() {
+			public Iterator<Map.Entry<UUID, V>> iterator() {
+				return new ChildIterator<Map.Entry<UUID, V>>() {
+					protected Map.Entry<UUID, V> extract(V child) {
+						return new Entry(child);
+					}
+				};
+			}
+
+			public int size() {
+				return ChildMap.this.size();
+			}
+
+			public void clear() {
+				ChildMap.this.clear();
+			}
+		};
+	}
+
+	protected Object writeReplace() {
+		synchronized (lock) {
+			return new HashMap<UUID, V>(this);
+		}
+	}
+
+	/*
+	 * Walks the table's slots in order. Removing a child can move later children back past the
+	 * walk, so the first removal switches the walk to a copy of the table as it was.
+	 */
+	protected abstract class ChildIterator<T> implements Iterator<T> {
+		protected Object[] slots = table;
+		protected int cursor = 0;
+		protected V current;
+
+		protected abstract T extract(V child);
+
+		public boolean hasNext() {
+			while (cursor < slots.length && slots[cursor] == null) {
+				cursor += 1;
+			}
+			return cursor < slots.length;
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			current = child(slots[cursor]);
+			cursor += 1;
+			return extract(current);
+		}
+
+		public void remove() {
+			if (current == null) {
+				throw new IllegalStateException();
+			}
+			synchronized (lock) {
+				if (slots == table) {
+					slots = table.clone();
+				}
+				V child = current;
+				current = null;
+				UUID id = idOf(child);
+				int position = position(id.getMostSignificantBits(), id.getLeastSignificantBits());
+				if (position >= 0 && table[position] == child) {
+					delete(position);
+					detach(child);
+				}
+			}
+		}
+	}
+
+	protected class Entry implements Map.Entry<UUID, V> {
+		protected final UUID key;
+		protected V value;
+
+		protected Entry(V value) {
+			this.key = idOf(value);
+			this.value = value;
+		}
+
+		public UUID getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) throws IllegalArgumentException {
+			synchronized (lock) {
+				if (!key.equals(idOf(value))) {
+					throw new IllegalArgumentException("Key does not match id");
+				}
+				V previous = this.value;
+				int position = position(key);
+				if (previous != value && position >= 0 && table[position] == previous) {
+					adopt(value);
+					table[position] = value;
+					detach(previous);
+					attach(value);
+				}
+				this.value = value;
+				return previous;
+			}
+		}
+
+		public boolean equals(Object other) {
+			if (other instanceof Map.Entry) {
+				Map.Entry<?, ?> that = (Map.Entry<?, ?>) other;
+				return Objects.equals(getKey(), that.getKey()) && Objects.equals(getValue(), that.getValue());
+			} else {
+				return false;
+			}
+		}
+
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(value);
+		}
+
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.jakobcornell.gradecalculator.model;
+
+/*
+ * Sums over a category's assignment columns for DenseCategory. Implementations use Neumaier
+ * compensation like Sum, so a scan agrees with the running sums to rounding in the last place.
+ */
+interface ColumnKernel {
+	int EARNED = 0, POSSIBLE = 1, WEIGHT = 2, WEIGHTED_SCORE = 3;
+
+	/*
+	 * Fills sums with the totals of earned, possible and weight over the first length entries, and
+	 * of weight * (earned / possible) over the ones with points possible, indexed as above. Returns
+	 * how many have points possible.
+	 */
+	int sum(double[] weights, double[] earned, double[] possible, int length, double[] sums);
+
+	static ColumnKernel load() {
+		// the vector kernel needs the incubator module, which is only there with --add-modules jdk.incubator.vector
+		if (!Boolean.getBoolean("gradecalculator.scalar")) {
+			try {
+				return (ColumnKernel) Class.forName("com.jakobcornell.gradecalculator.model.VectorKernel").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+			}
+		}
+		return new ScalarKernel();
+	}
+}
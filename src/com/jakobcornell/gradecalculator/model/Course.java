@@ -1,60 +1,302 @@
 package com.jakobcornell.gradecalculator.model;
 
-import java.util.List;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.function.Predicate;
 
 public class Course implements java.io.Serializable {
 	private static final long serialVersionUID = 0;
 
 	public final Map<UUID, Category> categories;
-	public String name;
+	// set under the lock, and volatile so that getName doesn't need it
+	protected volatile String name;
+
+	/*
+	 * Running sums over the scorable categories, kept current by the category map and the
+	 * categories' rescore. Non-finite contributions are only counted, as in Category. The sums and
+	 * the category map are guarded by the course's lock, which is never held while taking a
+	 * category's, so a category can report to its course while holding its own.
+	 */
+	protected transient int scorable, irregular;
+	protected final transient Sum weightSum = new Sum(), weightedScoreSum = new Sum();
+
+	/*
+	 * The course as of the last change to it or any of its categories, replaced whole so that
+	 * readers never need a lock. Snapshots are only kept once snapshot() has been called, and from
+	 * then on every category keeps its own as well. versions holds the categories' snapshots for the
+	 * next one, and pending the categories without one yet (added since, say), which snapshot()
+	 * catches up; there's no course snapshot while any are pending. Both are guarded by the lock.
+	 */
+	protected transient volatile CourseSnapshot snapshot;
+	protected transient volatile boolean tracking;
+	protected transient PersistentMap<CategorySnapshot> versions = PersistentMap.empty();
+	protected transient Set<Category> pending = new HashSet<Category>();
+
+	// created by the first call to grades()
+	protected transient volatile GradePublisher grades;
 
 	public Course(String name) {
-		categories = new HashMap<UUID, Category>();
-		this.name = name;
+		this(name, 0);
 	}
 
-	public double score() throws ScoringException {
-		Predicate<Category> scorable = new Predicate<Category>() {
-			public boolean test(Category category) {
-				try {
-					category.score();
-				} catch (ScoringException e) {
-					return false;
+	public Course(String name, int expectedCategories) {
+		categories = new ChildMap<Category>(expectedCategories, this) {
+			protected UUID idOf(Category category) {
+				return category.id;
+			}
+
+			protected void adopt(Category category) throws IllegalArgumentException {
+				if (category.course != null) {
+					throw new IllegalArgumentException("Category already belongs to a course");
+				}
+			}
+
+			protected void added(Category category) {
+				category.course = Course.this;
+				reconcile(category);
+			}
+
+			protected void removed(Category category) {
+				if (category.tallied != null) {
+					tally(category.tallied, -1);
+					category.tallied = null;
+				}
+				category.course = null;
+				changed();
+				if (tracking) {
+					versions = versions.without(category.id);
+					pending.remove(category);
+					publish();
 				}
-				return true;
 			}
 		};
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized void setName(String name) {
+		this.name = name;
+		if (tracking) {
+			publish();
+		}
+	}
+
+	/*
+	 * The course as of its last change. Only takes locks when there are categories to catch up,
+	 * which is on the first call and after categories without snapshots are added; categories
+	 * can't be asked to start keeping them from under the course's lock, so it's done here.
+	 */
+	public CourseSnapshot snapshot() {
+		CourseSnapshot snapshot = this.snapshot;
+		while (snapshot == null) {
+			List<Category> untracked;
+			synchronized (this) {
+				if (!tracking) {
+					tracking = true;
+					pending.addAll(categories.values());
+					publish();
+				}
+				untracked = new ArrayList<Category>(pending);
+			}
+			for (Category category : untracked) {
+				synchronized (category) {
+					category.track();
+				}
+			}
+			snapshot = this.snapshot;
+		}
+		return snapshot;
+	}
+
+	/*
+	 * Brings the sums and snapshot up to date with the category's latest. A category publishes its
+	 * report and snapshot before checking which course it's in, and a course sets itself as the
+	 * category's course before reading them, so ones published while the category is being added are
+	 * always counted.
+	 */
+	synchronized void reconcile(Category category) {
+		if (category.course != this) {
+			return;
+		}
+		// a category publishes its report before its snapshot, so the report is taken from the snapshot when there is one
+		CategorySnapshot snapshot = tracking ? category.snapshot : null;
+		Category.Report report = snapshot != null ? snapshot.report : category.report;
+		if (category.tallied != report) {
+			if (category.tallied != null) {
+				tally(category.tallied, -1);
+			}
+			tally(report, 1);
+			category.tallied = report;
+			changed();
+		}
+		if (tracking) {
+			if (snapshot == null) {
+				pending.add(category);
+				this.snapshot = null;
+			} else if (versions.get(category.id) != snapshot) {
+				versions = versions.with(category.id, snapshot);
+				pending.remove(category);
+				publish();
+			}
+		}
+	}
 
-		List<Double> weights = categories.values().stream()
-			.filter(scorable)
-			.map(Category::getWeight)
-			.collect(Collectors.toList());
+	// the course's grade changes, coalesced; see GradePublisher
+	public GradePublisher grades() {
+		GradePublisher grades = this.grades;
+		if (grades == null) {
+			synchronized (this) {
+				if (this.grades == null) {
+					this.grades = new GradePublisher(this::grade);
+				}
+				grades = this.grades;
+			}
+		}
+		return grades;
+	}
+
+	protected synchronized Grade grade() {
+		try {
+			return new Grade(true, compute());
+		} catch (ScoringException e) {
+			return new Grade(false, 0);
+		}
+	}
+
+	protected void changed() {
+		GradePublisher grades = this.grades;
+		if (grades != null) {
+			grades.changed();
+		}
+	}
 
-		List<Double> scores = new ArrayList<Double>();
-		for (Category category : categories.values()) {
-			if (scorable.test(category)) {
-				scores.add(category.score());
+	// called with the lock held; there's no snapshot to publish until every category has one
+	protected void publish() {
+		if (!pending.isEmpty()) {
+			snapshot = null;
+			return;
+		}
+		double score = 0;
+		boolean scorable = true;
+		try {
+			score = compute();
+		} catch (ScoringException e) {
+			scorable = false;
+		}
+		snapshot = new CourseSnapshot(name, versions, scorable, score);
+	}
+
+	void tally(Category.Report report, int sign) {
+		if (report.scorable) {
+			double score = report.score, weight = report.weight;
+			double term = score * weight;
+			scorable += sign;
+			if (!Double.isFinite(term) || !Double.isFinite(weight)) {
+				irregular += sign;
+			} else if (sign > 0) {
+				weightSum.add(weight);
+				weightedScoreSum.add(term);
+			} else {
+				weightSum.subtract(weight);
+				weightedScoreSum.subtract(term);
 			}
 		}
+	}
 
-		double totalWeight = weights.stream()
-			.mapToDouble(Double::valueOf)
-			.sum();
+	public Optional<Category> findCategory(String prefix) throws AmbiguousIdException {
+		return ((ChildMap<Category>) categories).find(prefix);
+	}
+
+	public synchronized boolean isScorable() {
+		return scorable > 0;
+	}
 
-		if (scores.isEmpty()) {
+	// consistent with every category's last rescore; doesn't wait on edits in progress
+	public synchronized double score() throws ScoringException {
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			double score = compute();
+			failed = false;
+			return score;
+		} finally {
+			Metrics.scored(start, categories.size() - scorable, failed);
+		}
+	}
+
+	protected double compute() throws ScoringException {
+		if (!isScorable()) {
 			throw new ScoringException("No scorable categories");
+		} else if (irregular > 0) {
+			double totalWeight = 0, weightedScore = 0;
+			for (Category category : categories.values()) {
+				Category.Report report = category.tallied;
+				if (report != null && report.scorable) {
+					totalWeight += report.weight;
+					weightedScore += report.score * report.weight;
+				}
+			}
+			return weightedScore / totalWeight;
 		} else {
-			double score = 0;
-			for (int i = 0; i < scores.size(); i += 1) {
-				score += scores.get(i) * weights.get(i) / totalWeight;
+			return weightedScoreSum.value() / weightSum.value();
+		}
+	}
+
+	/*
+	 * The score the course would have if the categories in the map reported the projected reports
+	 * instead of their own, worked out from the running sums. Categories that aren't in the course
+	 * are ignored.
+	 */
+	synchronized double project(Map<Category, Category.Report> projected) throws ScoringException {
+		int scorable = this.scorable;
+		boolean regular = irregular == 0;
+		double totalWeight = weightSum.value(), weightedScore = weightedScoreSum.value();
+		for (Map.Entry<Category, Category.Report> entry : projected.entrySet()) {
+			Category category = entry.getKey();
+			Category.Report report = entry.getValue(), tallied = category.tallied;
+			if (category.course == this && tallied != null) {
+				if (tallied.scorable) {
+					scorable -= 1;
+					totalWeight -= tallied.weight;
+					weightedScore -= tallied.score * tallied.weight;
+				}
+				if (report.scorable) {
+					scorable += 1;
+					totalWeight += report.weight;
+					weightedScore += report.score * report.weight;
+					regular &= Double.isFinite(report.score * report.weight) && Double.isFinite(report.weight);
+				}
 			}
-			return score;
 		}
+
+		if (scorable == 0) {
+			throw new ScoringException("No scorable categories");
+		} else if (!regular) {
+			totalWeight = 0;
+			weightedScore = 0;
+			for (Category category : categories.values()) {
+				Category.Report report = projected.getOrDefault(category, category.tallied);
+				if (report != null && report.scorable) {
+					totalWeight += report.weight;
+					weightedScore += report.score * report.weight;
+				}
+			}
+		}
+		return weightedScore / totalWeight;
+	}
+
+	protected Object readResolve() throws java.io.ObjectStreamException {
+		Course course = new Course(name, categories.size());
+		course.categories.putAll(categories);
+		return course;
 	}
 }
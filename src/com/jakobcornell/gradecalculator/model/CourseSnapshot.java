@@ -0,0 +1,36 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * An immutable version of a course, for reading from other threads while it's being edited without
+ * taking any locks: Course.snapshot() returns the latest. Every edit publishes a new version, which
+ * shares everything with the last one except the changed assignment and the nodes on the maps'
+ * paths from the course down to it. The score is the one the course had as of the version.
+ */
+public class CourseSnapshot {
+	public final String name;
+	public final Map<UUID, CategorySnapshot> categories;
+	protected final boolean scorable;
+	protected final double score;
+
+	CourseSnapshot(String name, PersistentMap<CategorySnapshot> categories, boolean scorable, double score) {
+		this.name = name;
+		this.categories = categories;
+		this.scorable = scorable;
+		this.score = score;
+	}
+
+	public boolean isScorable() {
+		return scorable;
+	}
+
+	public double score() throws ScoringException {
+		if (scorable) {
+			return score;
+		} else {
+			throw new ScoringException("No scorable categories");
+		}
+	}
+}
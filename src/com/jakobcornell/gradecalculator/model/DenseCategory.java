@@ -0,0 +1,142 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.UUID;
+
+/*
+ * A category's assignments copied into parallel arrays, for scoring large categories (question
+ * level grading, for instance) by scanning instead of keeping running sums. Scores agree with
+ * Category's to rounding in the last place. Scans use SIMD when the JVM is started with
+ * --add-modules jdk.incubator.vector, unless -Dgradecalculator.scalar=true, and a scalar loop
+ * otherwise.
+ *
+ * Indices follow the category's assignment order at the time of the copy; edits to either the
+ * copy or the category aren't reflected in the other.
+ */
+public class DenseCategory {
+	protected static final ColumnKernel KERNEL = ColumnKernel.load();
+
+	public final UUID id;
+	protected final boolean useWeights;
+	protected final UUID[] ids;
+	protected final double[] weights, earned, possible;
+
+	public DenseCategory(Category category) {
+		id = category.id;
+		synchronized (category) {
+			useWeights = category.useWeights;
+			int size = category.assignments.size();
+			ids = new UUID[size];
+			weights = new double[size];
+			earned = new double[size];
+			possible = new double[size];
+			int i = 0;
+			for (Assignment assignment : category.assignments.values()) {
+				ids[i] = assignment.id;
+				weights[i] = assignment.weight;
+				earned[i] = assignment.earned;
+				possible[i] = assignment.possible;
+				i += 1;
+			}
+		}
+	}
+
+	public static boolean isVectorized() {
+		return !(KERNEL instanceof ScalarKernel);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public UUID getAssignmentId(int assignment) {
+		return ids[assignment];
+	}
+
+	public double getWeight(int assignment) {
+		return weights[assignment];
+	}
+
+	public void setWeight(int assignment, double weight) throws IllegalArgumentException {
+		if (weight >= 0) {
+			weights[assignment] = weight;
+		} else {
+			throw new IllegalArgumentException("Weights cannot be negative");
+		}
+	}
+
+	public double getEarned(int assignment) {
+		return earned[assignment];
+	}
+
+	public void setEarned(int assignment, double earned) throws IllegalArgumentException {
+		if (earned >= 0) {
+			this.earned[assignment] = earned;
+		} else {
+			throw new IllegalArgumentException("Scores cannot be negative");
+		}
+	}
+
+	public double getPossible(int assignment) {
+		return possible[assignment];
+	}
+
+	public void setPossible(int assignment, double possible) throws IllegalArgumentException {
+		if (possible >= 0) {
+			this.possible[assignment] = possible;
+		} else {
+			throw new IllegalArgumentException("Scores cannot be negative");
+		}
+	}
+
+	public boolean isScorable() {
+		double[] sums = new double[4];
+		int positive = sum(sums);
+		return useWeights ? positive == ids.length : sums[ColumnKernel.POSSIBLE] > 0;
+	}
+
+	public double score() throws ScoringException {
+		double[] sums = new double[4];
+		int positive = sum(sums);
+		if (useWeights) {
+			if (positive < ids.length) {
+				throw new ScoringException(String.format("Category %s has an assignment with 0 possible points", id.toString()));
+			}
+			return ids.length == 0 ? 0 : sums[ColumnKernel.WEIGHTED_SCORE] / sums[ColumnKernel.WEIGHT];
+		} else {
+			if (!(sums[ColumnKernel.POSSIBLE] > 0)) {
+				throw new ScoringException(String.format("Category %s has 0 total possible points", id.toString()));
+			}
+			return sums[ColumnKernel.EARNED] / sums[ColumnKernel.POSSIBLE];
+		}
+	}
+
+	protected int sum(double[] sums) {
+		int positive = KERNEL.sum(weights, earned, possible, ids.length, sums);
+		for (double sum : sums) {
+			// compensation doesn't survive infinite terms; sum them plainly instead, as Category does
+			if (!Double.isFinite(sum)) {
+				return walk(sums);
+			}
+		}
+		return positive;
+	}
+
+	protected int walk(double[] sums) {
+		double totalEarned = 0, totalPossible = 0, totalWeight = 0, weightedScore = 0;
+		int positive = 0;
+		for (int i = 0; i < ids.length; i += 1) {
+			totalEarned += earned[i];
+			totalPossible += possible[i];
+			totalWeight += weights[i];
+			if (possible[i] > 0) {
+				weightedScore += weights[i] * (earned[i] / possible[i]);
+				positive += 1;
+			}
+		}
+		sums[ColumnKernel.EARNED] = totalEarned;
+		sums[ColumnKernel.POSSIBLE] = totalPossible;
+		sums[ColumnKernel.WEIGHT] = totalWeight;
+		sums[ColumnKernel.WEIGHTED_SCORE] = weightedScore;
+		return positive;
+	}
+}
@@ -0,0 +1,28 @@
+package com.jakobcornell.gradecalculator.model;
+
+// a course's or category's score at one point, as delivered to subscribers; see GradePublisher
+public class Grade {
+	public final boolean scorable;
+	public final double score;
+
+	Grade(boolean scorable, double score) {
+		this.scorable = scorable;
+		this.score = scorable ? score : Double.NaN;
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof Grade)) {
+			return false;
+		}
+		Grade grade = (Grade) other;
+		return scorable == grade.scorable && Double.compare(score, grade.score) == 0;
+	}
+
+	public int hashCode() {
+		return Boolean.hashCode(scorable) * 31 + Double.hashCode(score);
+	}
+
+	public String toString() {
+		return scorable ? Double.toString(score) : "unscorable";
+	}
+}
@@ -0,0 +1,65 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/*
+ * Grade changes of a course or category, for subscribers that would otherwise poll. Changes are
+ * coalesced: the first change after a delivery schedules the next one a tick later
+ * (-Dgradecalculator.tick milliseconds, 100 by default), and that delivery reads the grade as it
+ * is then, so any burst of edits costs subscribers at most one update per tick, and none if the
+ * grade ends up where it was. Each edit in between costs a volatile read.
+ *
+ * Updates reach subscribers through a SubmissionPublisher. One that has fallen a buffer's worth of
+ * updates behind misses updates rather than holding up the others.
+ */
+public class GradePublisher implements Flow.Publisher<Grade> {
+	public static final long TICK_MILLIS = Long.getLong("gradecalculator.tick", 100);
+
+	protected static final ScheduledExecutorService ticks = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "grade ticks");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	protected final SubmissionPublisher<Grade> publisher = new SubmissionPublisher<Grade>();
+	protected final Supplier<Grade> source;
+	protected final AtomicBoolean scheduled = new AtomicBoolean();
+
+	// the last grade delivered, only touched from the tick thread
+	protected Grade last;
+
+	GradePublisher(Supplier<Grade> source) {
+		this.source = source;
+		last = source.get();
+	}
+
+	public void subscribe(Flow.Subscriber<? super Grade> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	// the grade as of now, for a subscriber to start from
+	public Grade current() {
+		return source.get();
+	}
+
+	void changed() {
+		if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+			ticks.schedule(this::deliver, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	protected void deliver() {
+		scheduled.set(false);
+		Grade grade = source.get();
+		if (!grade.equals(last)) {
+			last = grade;
+			publisher.offer(grade, (subscriber, dropped) -> false);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/*
+ * A prefix of a UUID's string form, as the range of ids whose strings start with it. Ids compare
+ * in the same order as their strings when ordered by ORDER.
+ */
+public class IdPrefix {
+	public static final Comparator<UUID> ORDER = new Comparator<UUID>() {
+		public int compare(UUID a, UUID b) {
+			return IdPrefix.compare(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(), b.getLeastSignificantBits());
+		}
+	};
+
+	public final long lowMsb, lowLsb, highMsb, highLsb;
+
+	protected IdPrefix(long lowMsb, long lowLsb, long highMsb, long highLsb) {
+		this.lowMsb = lowMsb;
+		this.lowLsb = lowLsb;
+		this.highMsb = highMsb;
+		this.highLsb = highLsb;
+	}
+
+	// returns null if no id's string form starts with the prefix
+	public static IdPrefix parse(String prefix) {
+		if (prefix.length() > 36) {
+			return null;
+		}
+		long msb = 0, lsb = 0;
+		int digits = 0;
+		for (int i = 0; i < prefix.length(); i += 1) {
+			char c = prefix.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return null;
+				}
+			} else {
+				long digit;
+				if (c >= '0' && c <= '9') {
+					digit = c - '0';
+				} else if (c >= 'a' && c <= 'f') {
+					digit = c - 'a' + 10;
+				} else {
+					return null;
+				}
+				if (digits < 16) {
+					msb |= digit << (60 - 4 * digits);
+				} else {
+					lsb |= digit << (60 - 4 * (digits - 16));
+				}
+				digits += 1;
+			}
+		}
+
+		long msbMask = digits >= 16 ? 0 : -1L >>> (4 * digits);
+		long lsbMask = digits <= 16 ? -1L : digits >= 32 ? 0 : -1L >>> (4 * (digits - 16));
+		return new IdPrefix(msb, lsb, msb | msbMask, lsb | lsbMask);
+	}
+
+	public UUID low() {
+		return new UUID(lowMsb, lowLsb);
+	}
+
+	public UUID high() {
+		return new UUID(highMsb, highLsb);
+	}
+
+	public boolean matches(long msb, long lsb) {
+		return compare(msb, lsb, lowMsb, lowLsb) >= 0 && compare(msb, lsb, highMsb, highLsb) <= 0;
+	}
+
+	public boolean matches(UUID id) {
+		return matches(id.getMostSignificantBits(), id.getLeastSignificantBits());
+	}
+
+	public static int compare(long aMsb, long aLsb, long bMsb, long bLsb) {
+		int result = Long.compareUnsigned(aMsb, bMsb);
+		if (result == 0) {
+			result = Long.compareUnsigned(aLsb, bLsb);
+		}
+		return result;
+	}
+}
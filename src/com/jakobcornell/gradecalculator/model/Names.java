@@ -0,0 +1,26 @@
+package com.jakobcornell.gradecalculator.model;
+
+/*
+ * Shares equal names between model objects. Large courses repeat the same few names ("Question
+ * 3", "Quiz 1") across thousands of categories, and each file format decodes every one into its
+ * own String. A small direct-mapped cache catches the repeats without holding on to every name
+ * ever seen; a name evicted by a colliding one is just stored again. Races between threads are
+ * harmless, since Strings are immutable and any of the equal copies will do.
+ */
+class Names {
+	protected static final int SIZE = 1 << 14;
+	protected static final String[] cache = new String[SIZE];
+
+	static String share(String name) {
+		if (name == null) {
+			return null;
+		}
+		int slot = (name.hashCode() * 0x9e3779b9 >>> 18) & (SIZE - 1);
+		String cached = cache[slot];
+		if (name.equals(cached)) {
+			return cached;
+		}
+		cache[slot] = name;
+		return name;
+	}
+}
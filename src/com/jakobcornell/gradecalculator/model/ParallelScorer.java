@@ -0,0 +1,229 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Scores a course or category from its assignments, rather than from the running sums, with the
+ * work spread over a ForkJoinPool: categories in parallel, and each large category in chunks of
+ * its assignment table. The chunks and the order their compensated sums are combined in depend
+ * only on the course, not on the pool, so a course scores to the same bits with any number of
+ * threads; courses with fewer than THRESHOLD assignments are scored on the calling thread, through
+ * the same chunks. Scores agree with Course.score and Category.score to rounding in the last place.
+ *
+ * Each category is read under its lock, and edits made while a course is being scored may or may
+ * not be counted, category by category, as with Course.score. A large category's chunks are
+ * joined with its lock held, so they're scored one category at a time, and no task ever waits
+ * while holding a lock. Not to be called from a task running in the same pool.
+ */
+public class ParallelScorer {
+	public static final int THRESHOLD = 1 << 16;
+
+	// table slots per leaf task; categories with fewer assignments are scored by a single task
+	protected static final int CHUNK = 1 << 13;
+
+	protected final ForkJoinPool pool;
+
+	public ParallelScorer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public double score(Category category) throws ScoringException {
+		Category.Report report = report(category, category.assignments.size() >= THRESHOLD);
+		if (report.scorable) {
+			return report.score;
+		} else if (category.getUseWeights()) {
+			throw new ScoringException(String.format("Category %s has an assignment with 0 possible points", category.id.toString()));
+		} else {
+			throw new ScoringException(String.format("Category %s has 0 total possible points", category.id.toString()));
+		}
+	}
+
+	public double score(Course course) throws ScoringException {
+		Category[] categories;
+		synchronized (course) {
+			categories = course.categories.values().toArray(new Category[0]);
+		}
+		long total = 0;
+		for (Category category : categories) {
+			total += category.assignments.size();
+		}
+		boolean parallel = total >= THRESHOLD;
+
+		Category.Report[] reports = new Category.Report[categories.length];
+		for (int i = 0; i < categories.length; i += 1) {
+			if (categories[i].assignments.size() >= CHUNK) {
+				reports[i] = report(categories[i], parallel);
+			}
+		}
+		Reports rest = new Reports(categories, reports, 0, categories.length);
+		if (parallel) {
+			pool.invoke(rest);
+		} else {
+			rest.compute();
+		}
+
+		Partial sums = new Partial();
+		boolean scorable = false;
+		for (Category.Report report : reports) {
+			if (report.scorable) {
+				sums.add(Partial.WEIGHT, report.weight);
+				sums.add(Partial.WEIGHTED_SCORE, report.score * report.weight);
+				scorable = true;
+			}
+		}
+		if (!scorable) {
+			throw new ScoringException("No scorable categories");
+		} else if (sums.isFinite()) {
+			return sums.value(Partial.WEIGHTED_SCORE) / sums.value(Partial.WEIGHT);
+		} else {
+			// compensation doesn't survive infinite terms; sum them plainly instead, as Course does
+			double totalWeight = 0, weightedScore = 0;
+			for (Category.Report report : reports) {
+				if (report.scorable) {
+					totalWeight += report.weight;
+					weightedScore += report.score * report.weight;
+				}
+			}
+			return weightedScore / totalWeight;
+		}
+	}
+
+	protected Category.Report report(Category category, boolean parallel) {
+		synchronized (category) {
+			Chunk chunk = new Chunk(((ChildMap<Assignment>) category.assignments).table, parallel);
+			return report(category, parallel ? pool.invoke(chunk) : chunk.compute());
+		}
+	}
+
+	// called with the category's lock held
+	protected static Category.Report report(Category category, Partial sums) {
+		if (!sums.isFinite()) {
+			return category.walk();
+		} else if (category.useWeights) {
+			double score = sums.count == 0 ? 0 : sums.value(Partial.WEIGHTED_SCORE) / sums.value(Partial.WEIGHT);
+			return new Category.Report(sums.positive == sums.count, score, category.weight);
+		} else {
+			return new Category.Report(sums.positive > 0, sums.value(Partial.EARNED) / sums.value(Partial.POSSIBLE), category.weight);
+		}
+	}
+
+	// compensated sums over some assignments, as in ScalarKernel, each followed by its compensation
+	protected static class Partial {
+		protected static final int EARNED = 0, POSSIBLE = 2, WEIGHT = 4, WEIGHTED_SCORE = 6;
+
+		protected final double[] sums = new double[8];
+		protected int count, positive;
+
+		protected void add(int index, double value) {
+			double total = sums[index] + value;
+			sums[index + 1] += ScalarKernel.compensation(sums[index], value, total);
+			sums[index] = total;
+		}
+
+		protected void add(Assignment assignment) {
+			double term = 0;
+			if (assignment.possible > 0) {
+				term = assignment.weight * (assignment.earned / assignment.possible);
+				positive += 1;
+			}
+			count += 1;
+			add(EARNED, assignment.earned);
+			add(POSSIBLE, assignment.possible);
+			add(WEIGHT, assignment.weight);
+			add(WEIGHTED_SCORE, term);
+		}
+
+		protected Partial combine(Partial other) {
+			for (int index = 0; index < sums.length; index += 2) {
+				add(index, other.sums[index]);
+				sums[index + 1] += other.sums[index + 1];
+			}
+			count += other.count;
+			positive += other.positive;
+			return this;
+		}
+
+		protected double value(int index) {
+			return sums[index] + sums[index + 1];
+		}
+
+		protected boolean isFinite() {
+			for (double sum : sums) {
+				if (!Double.isFinite(sum)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// a range of a category's table, halved until it's at most CHUNK slots; forks only if parallel
+	protected static class Chunk extends RecursiveTask<Partial> {
+		protected final Object[] table;
+		protected final int from, to;
+		protected final boolean parallel;
+
+		protected Chunk(Object[] table, int from, int to, boolean parallel) {
+			this.table = table;
+			this.from = from;
+			this.to = to;
+			this.parallel = parallel;
+		}
+
+		protected Chunk(Object[] table, boolean parallel) {
+			this(table, 0, table.length, parallel);
+		}
+
+		protected Partial compute() {
+			if (to - from <= CHUNK) {
+				Partial sums = new Partial();
+				for (int i = from; i < to; i += 1) {
+					if (table[i] != null) {
+						sums.add((Assignment) table[i]);
+					}
+				}
+				return sums;
+			}
+			int middle = (from + to) >>> 1;
+			Chunk left = new Chunk(table, from, middle, parallel), right = new Chunk(table, middle, to, parallel);
+			if (!parallel) {
+				return left.compute().combine(right.compute());
+			}
+			right.fork();
+			Partial sums = left.compute();
+			return sums.combine(right.join());
+		}
+	}
+
+	// the reports of the categories from through to - 1 that don't have one yet, one task each
+	protected static class Reports extends RecursiveAction {
+		protected final Category[] categories;
+		protected final Category.Report[] reports;
+		protected final int from, to;
+
+		protected Reports(Category[] categories, Category.Report[] reports, int from, int to) {
+			this.categories = categories;
+			this.reports = reports;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > 1 && getPool() != null) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Reports(categories, reports, from, middle), new Reports(categories, reports, middle, to));
+				return;
+			}
+			for (int i = from; i < to; i += 1) {
+				if (reports[i] == null) {
+					synchronized (categories[i]) {
+						Chunk chunk = new Chunk(((ChildMap<Assignment>) categories[i].assignments).table, false);
+						reports[i] = report(categories[i], chunk.compute());
+					}
+				}
+			}
+		}
+	}
+}
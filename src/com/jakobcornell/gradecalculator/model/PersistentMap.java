@@ -0,0 +1,286 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Immutable map from id to value, as a hash array mapped trie: each level of nodes indexes five
+ * bits of the id's hash. with and without return a new map sharing every node except the ones on
+ * the path to the changed entry, so a change costs time and space logarithmic in the size of the
+ * map. Ids whose hashes are equal share a collision node at the bottom.
+ *
+ * Each node's array holds pairs: an id and its value, or null and a child node.
+ */
+final class PersistentMap<V> extends AbstractMap<UUID, V> {
+	protected static final PersistentMap<?> EMPTY = new PersistentMap<Object>(null, 0);
+
+	protected final Node root;
+	protected final int size;
+
+	protected PersistentMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <V> PersistentMap<V> empty() {
+		return (PersistentMap<V>) EMPTY;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (!(key instanceof UUID) || root == null) {
+			return null;
+		}
+		int hash = key.hashCode();
+		Node node = root;
+		for (int shift = 0; ; shift += 5) {
+			Object[] array = node.array;
+			if (node.bitmap == 0) {
+				// collision node
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return (V) array[i + 1];
+					}
+				}
+				return null;
+			}
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((node.bitmap & bit) == 0) {
+				return null;
+			}
+			int index = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+			if (array[index] == null) {
+				node = (Node) array[index + 1];
+			} else {
+				return key.equals(array[index]) ? (V) array[index + 1] : null;
+			}
+		}
+	}
+
+	PersistentMap<V> with(UUID key, V value) {
+		boolean[] added = {false};
+		Node root = this.root == null ? new Node(1 << (key.hashCode() & 31), new Object[] {key, value}) : this.root.with(0, key.hashCode(), key, value, added);
+		if (this.root == null) {
+			added[0] = true;
+		}
+		return root == this.root ? this : new PersistentMap<V>(root, added[0] ? size + 1 : size);
+	}
+
+	PersistentMap<V> without(UUID key) {
+		if (root == null) {
+			return this;
+		}
+		Node root = this.root.without(0, key.hashCode(), key);
+		if (root == this.root) {
+			return this;
+		}
+		return root == null ? PersistentMap.<V>empty() : new PersistentMap<V>(root, size - 1);
+	}
+
+	public Set<Map.Entry<UUID, V>> entrySet() {
+		return new AbstractSet<Map.Entry<UUID, V>>() {
+			public int size() {
+				return size;
+			}
+
+			public Iterator<Map.Entry<UUID, V>> iterator() {
+				return new Entries();
+			}
+		};
+	}
+
+	/*
+	 * A bitmap of which of the 32 hash slots at this level are filled, with the array holding a pair
+	 * for each filled slot in order; or a collision node, with a zero bitmap and the pairs of ids
+	 * sharing a hash in any order.
+	 */
+	protected static final class Node {
+		protected final int bitmap;
+		protected final Object[] array;
+
+		protected Node(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		protected Node with(int shift, int hash, UUID key, Object value, boolean[] added) {
+			if (bitmap == 0) {
+				if (hash != array[0].hashCode()) {
+					// a different hash reaching a collision node; push the node down a level beside the new entry
+					Node parent = new Node(1 << ((array[0].hashCode() >>> shift) & 31), new Object[] {null, this});
+					return parent.with(shift, hash, key, value, added);
+				}
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return array[i + 1] == value ? this : replace(i + 1, value);
+					}
+				}
+				added[0] = true;
+				Object[] grown = Arrays.copyOf(array, array.length + 2);
+				grown[array.length] = key;
+				grown[array.length + 1] = value;
+				return new Node(0, grown);
+			}
+
+			int bit = 1 << ((hash >>> shift) & 31);
+			int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+			if ((bitmap & bit) == 0) {
+				added[0] = true;
+				Object[] grown = new Object[array.length + 2];
+				System.arraycopy(array, 0, grown, 0, index);
+				grown[index] = key;
+				grown[index + 1] = value;
+				System.arraycopy(array, index, grown, index + 2, array.length - index);
+				return new Node(bitmap | bit, grown);
+			}
+			Object existing = array[index];
+			if (existing == null) {
+				Node child = (Node) array[index + 1], updated = child.with(shift + 5, hash, key, value, added);
+				return updated == child ? this : replace(index + 1, updated);
+			} else if (key.equals(existing)) {
+				return array[index + 1] == value ? this : replace(index + 1, value);
+			} else {
+				added[0] = true;
+				Node child = pair(shift + 5, (UUID) existing, array[index + 1], hash, key, value);
+				Object[] copy = array.clone();
+				copy[index] = null;
+				copy[index + 1] = child;
+				return new Node(bitmap, copy);
+			}
+		}
+
+		// null once the last entry is gone
+		protected Node without(int shift, int hash, UUID key) {
+			if (bitmap == 0) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i])) {
+						return array.length == 2 ? null : new Node(0, remove(i));
+					}
+				}
+				return this;
+			}
+
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((bitmap & bit) == 0) {
+				return this;
+			}
+			int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+			Object existing = array[index];
+			if (existing == null) {
+				Node child = (Node) array[index + 1], updated = child.without(shift + 5, hash, key);
+				if (updated == child) {
+					return this;
+				} else if (updated == null) {
+					return bitmap == bit ? null : new Node(bitmap & ~bit, remove(index));
+				} else if (updated.array.length == 2 && updated.array[0] != null) {
+					// a single entry left below; keep it at this level instead
+					Object[] copy = array.clone();
+					copy[index] = updated.array[0];
+					copy[index + 1] = updated.array[1];
+					return new Node(bitmap, copy);
+				} else {
+					return replace(index + 1, updated);
+				}
+			} else if (key.equals(existing)) {
+				return bitmap == bit ? null : new Node(bitmap & ~bit, remove(index));
+			} else {
+				return this;
+			}
+		}
+
+		protected Node replace(int index, Object value) {
+			Object[] copy = array.clone();
+			copy[index] = value;
+			return new Node(bitmap, copy);
+		}
+
+		protected Object[] remove(int index) {
+			Object[] shrunk = new Object[array.length - 2];
+			System.arraycopy(array, 0, shrunk, 0, index);
+			System.arraycopy(array, index + 2, shrunk, index, array.length - index - 2);
+			return shrunk;
+		}
+
+		// a node holding two entries whose hashes agree below the shift
+		protected static Node pair(int shift, UUID firstKey, Object firstValue, int hash, UUID key, Object value) {
+			int firstHash = firstKey.hashCode();
+			if (firstHash == hash) {
+				return new Node(0, new Object[] {firstKey, firstValue, key, value});
+			}
+			int firstSlot = (firstHash >>> shift) & 31, slot = (hash >>> shift) & 31;
+			if (firstSlot == slot) {
+				return new Node(1 << slot, new Object[] {null, pair(shift + 5, firstKey, firstValue, hash, key, value)});
+			} else if (firstSlot < slot) {
+				return new Node((1 << firstSlot) | (1 << slot), new Object[] {firstKey, firstValue, key, value});
+			} else {
+				return new Node((1 << firstSlot) | (1 << slot), new Object[] {key, value, firstKey, firstValue});
+			}
+		}
+	}
+
+	// depth-first over the trie, with a stack of the arrays being walked and positions in them
+	protected class Entries implements Iterator<Map.Entry<UUID, V>> {
+		protected final Object[][] arrays = new Object[9][];
+		protected final int[] positions = new int[9];
+		protected int depth = -1;
+		protected Map.Entry<UUID, V> next;
+
+		protected Entries() {
+			if (root != null) {
+				depth = 0;
+				arrays[0] = root.array;
+			}
+			advance();
+		}
+
+		@SuppressWarnings("unchecked")
+		protected void advance() {
+			next = null;
+			while (depth >= 0) {
+				Object[] array = arrays[depth];
+				int position = positions[depth];
+				if (position == array.length) {
+					depth -= 1;
+				} else {
+					positions[depth] = position + 2;
+					if (array[position] == null) {
+						depth += 1;
+						arrays[depth] = ((Node) array[position + 1]).array;
+						positions[depth] = 0;
+					} else {
+						next = new AbstractMap.SimpleImmutableEntry<UUID, V>((UUID) array[position], (V) array[position + 1]);
+						return;
+					}
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Map.Entry<UUID, V> next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<UUID, V> entry = next;
+			advance();
+			return entry;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * What-if scores for a course: hypothetical points earned on some of its assignments, scored
+ * against the course's running sums without copying or changing anything. Each evaluation costs
+ * time in the number of hypothetical changes, not the size of the course, except in categories
+ * with infinite values, which are walked as they are for scoring.
+ *
+ *   Projection projection = new Projection(course);
+ *   projection.setEarned(midterm, 42);
+ *   projection.score();                      // the grade with 42 points on the midterm
+ *   projection.needed(List.of(final), 0.9);  // the fraction of the final's points needed for 90%
+ */
+public class Projection {
+	protected final Course course;
+
+	// hypothetical points earned, by category and then assignment
+	protected final Map<Category, Map<Assignment, Double>> earned = new HashMap<Category, Map<Assignment, Double>>();
+
+	public Projection(Course course) {
+		this.course = course;
+	}
+
+	public void setEarned(Assignment assignment, double earned) throws IllegalArgumentException {
+		Category category = assignment.category;
+		if (category == null || category.course != course) {
+			throw new IllegalArgumentException("Assignment isn't in the course");
+		} else if (!(earned >= 0)) {
+			throw new IllegalArgumentException("Scores cannot be negative");
+		}
+		this.earned.computeIfAbsent(category, key -> new HashMap<Assignment, Double>()).put(assignment, earned);
+	}
+
+	public void clear() {
+		earned.clear();
+	}
+
+	public double score() throws ScoringException {
+		return score(earned);
+	}
+
+	/*
+	 * The fraction of their possible points the remaining assignments would all need to earn for the
+	 * course to score the target, on top of the hypothetical changes; 0 if the target is met even
+	 * with no points on them, and more than 1 if it takes extra credit. Scores are linear in the
+	 * points earned on any set of assignments (which categories are scorable depends only on points
+	 * possible), so two evaluations, at no points and at full points, are enough.
+	 */
+	public double needed(Collection<Assignment> remaining, double target) throws IllegalArgumentException, ScoringException {
+		Map<Category, Map<Assignment, Double>> none = copy(), full = copy();
+		for (Assignment assignment : remaining) {
+			Category category = assignment.category;
+			if (category == null || category.course != course) {
+				throw new IllegalArgumentException("Assignment isn't in the course");
+			}
+			none.computeIfAbsent(category, key -> new HashMap<Assignment, Double>()).put(assignment, 0.0);
+			full.computeIfAbsent(category, key -> new HashMap<Assignment, Double>()).put(assignment, assignment.possible);
+		}
+
+		double low = score(none), high = score(full);
+		if (low >= target) {
+			return 0;
+		} else if (high > low) {
+			return (target - low) / (high - low);
+		} else {
+			throw new ScoringException("The remaining assignments can't change the score");
+		}
+	}
+
+	protected Map<Category, Map<Assignment, Double>> copy() {
+		Map<Category, Map<Assignment, Double>> copy = new HashMap<Category, Map<Assignment, Double>>();
+		for (Map.Entry<Category, Map<Assignment, Double>> entry : earned.entrySet()) {
+			copy.put(entry.getKey(), new HashMap<Assignment, Double>(entry.getValue()));
+		}
+		return copy;
+	}
+
+	// categories' projections are taken one at a time, each under its own lock, and then the course's
+	protected double score(Map<Category, Map<Assignment, Double>> earned) throws ScoringException {
+		Map<Category, Category.Report> reports = new HashMap<Category, Category.Report>();
+		for (Map.Entry<Category, Map<Assignment, Double>> entry : earned.entrySet()) {
+			reports.put(entry.getKey(), entry.getKey().project(entry.getValue()));
+		}
+		return course.project(reports);
+	}
+}
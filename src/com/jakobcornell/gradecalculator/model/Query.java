@@ -0,0 +1,387 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/*
+ * The assignments of a course, or of one of its categories, passing filters on their score,
+ * weight, name or lost points, in order of one of those and up to a limit:
+ *
+ *   Query query = new Query(course);
+ *   query.where(Query.Key.SCORE, Query.Comparison.LESS, 0.6);
+ *   query.orderBy(Query.Key.LOST, true);
+ *   query.setLimit(10);
+ *   query.run();  // the ten assignments under 60% that cost the most of the course grade
+ *
+ * An assignment's lost points are the part of the course score it lost: how much the score would
+ * go up if it earned all its possible points. Across a course whose categories are all scorable,
+ * they add up to 1 minus the score.
+ *
+ * Ordered queries walk an index of each category sorted on the key, which the category builds on
+ * the first query to need it and keeps current through every edit from then on. The walk starts at
+ * the first assignment that could pass the filters on the key and stops once none of the rest can
+ * or the limit is reached, and each category's matches go through a heap holding at most the
+ * limit. Ties are broken by category id and then assignment id. Unordered queries scan, stopping
+ * at the limit.
+ */
+public class Query {
+	public enum Key {
+		SCORE, WEIGHT, LOST, NAME;
+	}
+
+	public enum Comparison {
+		LESS("<"), AT_MOST("<="), EQUAL("="), AT_LEAST(">="), GREATER(">"), CONTAINS("~");
+
+		public final String symbol;
+
+		private Comparison(String symbol) {
+			this.symbol = symbol;
+		}
+
+		// null if the symbol isn't one of the comparisons'
+		public static Comparison forSymbol(String symbol) {
+			for (Comparison comparison : values()) {
+				if (comparison.symbol.equals(symbol)) {
+					return comparison;
+				}
+			}
+			return null;
+		}
+	}
+
+	// ids ordered before and after every other, for probing an index
+	protected static final UUID FIRST = new UUID(0, 0), LAST = new UUID(-1, -1);
+
+	protected final Course course;
+	protected Category category;
+	protected final List<Filter> filters = new ArrayList<Filter>();
+	protected Key order;
+	protected boolean descending;
+	protected int limit = Integer.MAX_VALUE;
+
+	public Query(Course course) {
+		this.course = course;
+	}
+
+	// restricts the query to one of the course's categories
+	public void setCategory(Category category) throws IllegalArgumentException {
+		if (category != null && category.course != course) {
+			throw new IllegalArgumentException("Category isn't in the course");
+		}
+		this.category = category;
+	}
+
+	public void where(Key key, Comparison comparison, double value) throws IllegalArgumentException {
+		if (key == Key.NAME || comparison == Comparison.CONTAINS) {
+			throw new IllegalArgumentException(String.format("Can't compare %s to a number with %s", key.name().toLowerCase(), comparison.symbol));
+		}
+		filters.add(new Filter(key, comparison, value));
+	}
+
+	public void where(Key key, Comparison comparison, String value) throws IllegalArgumentException {
+		if (key != Key.NAME) {
+			throw new IllegalArgumentException(String.format("Can't compare %s to text", key.name().toLowerCase()));
+		}
+		filters.add(new Filter(key, comparison, value));
+	}
+
+	public void orderBy(Key key, boolean descending) {
+		this.order = key;
+		this.descending = descending;
+	}
+
+	public void setLimit(int limit) throws IllegalArgumentException {
+		if (limit > 0) {
+			this.limit = limit;
+		} else {
+			throw new IllegalArgumentException("Limit must be positive");
+		}
+	}
+
+	public List<Match> run() {
+		List<Category> categories;
+		double courseWeight;
+		synchronized (course) {
+			categories = category == null ? new ArrayList<Category>(course.categories.values()) : Collections.singletonList(category);
+			courseWeight = course.irregular > 0 ? Double.NaN : course.weightSum.value();
+		}
+
+		List<Match> matches = new ArrayList<Match>();
+		if (order == null) {
+			for (Category category : categories) {
+				synchronized (category) {
+					double factor = factor(category, courseWeight);
+					for (Assignment assignment : category.assignments.values()) {
+						if (matches.size() == limit) {
+							return matches;
+						}
+						Match match = new Match(category, assignment, factor);
+						if (passes(match)) {
+							matches.add(match);
+						}
+					}
+				}
+			}
+			return matches;
+		}
+
+		Comparator<Match> keys = keys();
+		Comparator<Match> comparator = keys
+			.thenComparing((Match match) -> match.category.id, IdPrefix.ORDER)
+			.thenComparing((Match match) -> match.assignment.id, IdPrefix.ORDER);
+		if (descending) {
+			comparator = comparator.reversed();
+		}
+		PriorityQueue<Match> best = new PriorityQueue<Match>(comparator.reversed());
+		for (Category category : categories) {
+			synchronized (category) {
+				double factor = factor(category, courseWeight);
+				Iterator<Assignment> candidates = candidates(category);
+				Match last = null;
+				int taken = 0;
+				while (candidates.hasNext()) {
+					Match match = new Match(category, candidates.next(), factor);
+					if (taken >= limit && keys.compare(match, last) != 0) {
+						// past the limit only ties with the last match can still place, since the heap
+						// breaks ties by id, and lost points scaled to 0 or NaN all tie
+						break;
+					} else if (passes(match)) {
+						taken += 1;
+						last = match;
+						best.add(match);
+						if (best.size() > limit) {
+							best.remove();
+						}
+					} else if (exhausted(match)) {
+						break;
+					}
+				}
+			}
+		}
+		matches.addAll(best);
+		matches.sort(comparator);
+		return matches;
+	}
+
+	// called with the category's lock held; the share of the course score per raw lost point
+	protected static double factor(Category category, double courseWeight) {
+		if (!category.report.scorable || category.irregular > 0) {
+			return Double.NaN;
+		}
+		double total = category.useWeights ? category.weightSum.value() : category.possibleSum.value();
+		return category.weight / courseWeight / total;
+	}
+
+	// the category's index on the order key, from the first assignment that could pass its filters
+	protected Iterator<Assignment> candidates(Category category) {
+		NavigableSet<Assignment> index = category.index(order);
+		Comparator<? super Assignment> comparator = index.comparator();
+		Assignment start = null;
+		if (order != Key.LOST) {
+			// lost points are scaled after the index is sorted, so there's nothing to probe with
+			for (Filter filter : filters) {
+				Assignment probe = null;
+				if (filter.key != order) {
+					continue;
+				} else if (!descending && (filter.comparison == Comparison.AT_LEAST || filter.comparison == Comparison.EQUAL)) {
+					probe = probe(filter, FIRST);
+				} else if (!descending && filter.comparison == Comparison.GREATER) {
+					probe = probe(filter, LAST);
+				} else if (descending && (filter.comparison == Comparison.AT_MOST || filter.comparison == Comparison.EQUAL)) {
+					probe = probe(filter, LAST);
+				} else if (descending && filter.comparison == Comparison.LESS) {
+					probe = probe(filter, FIRST);
+				}
+				if (probe != null && (start == null || (comparator.compare(probe, start) > 0) != descending)) {
+					start = probe;
+				}
+			}
+		}
+		if (descending) {
+			return (start == null ? index : index.headSet(start, false)).descendingIterator();
+		} else {
+			return (start == null ? index : index.tailSet(start, false)).iterator();
+		}
+	}
+
+	// an assignment that sorts on the key with the filter's value, before or after all others with it
+	protected static Assignment probe(Filter filter, UUID id) {
+		Assignment probe = new Assignment(id, null, 0, 0, 0);
+		if (filter.key == Key.NAME) {
+			probe.name = filter.text;
+		} else if (filter.key == Key.WEIGHT) {
+			probe.weight = filter.number;
+		} else {
+			probe.earned = filter.number;
+			probe.possible = 1;
+		}
+		return probe;
+	}
+
+	protected boolean passes(Match match) {
+		for (Filter filter : filters) {
+			if (!filter.passes(match)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// whether no assignment after the match in the walk can pass the filters on the order key
+	protected boolean exhausted(Match match) {
+		for (Filter filter : filters) {
+			if (filter.key == order && !filter.passes(match)) {
+				int side = filter.compare(match);
+				if (!descending && side >= 0 && (filter.comparison == Comparison.LESS || filter.comparison == Comparison.AT_MOST || filter.comparison == Comparison.EQUAL)) {
+					return true;
+				} else if (descending && side <= 0 && (filter.comparison == Comparison.GREATER || filter.comparison == Comparison.AT_LEAST || filter.comparison == Comparison.EQUAL)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// ascending on the order key, with unscorable assignments last
+	protected Comparator<Match> keys() {
+		if (order == Key.NAME) {
+			return (a, b) -> compareNames(a.name, b.name);
+		} else {
+			return (a, b) -> Double.compare(a.value(order), b.value(order));
+		}
+	}
+
+	protected static int compareNames(String a, String b) {
+		if (a == null || b == null) {
+			return a == null ? (b == null ? 0 : -1) : 1;
+		}
+		return a.compareTo(b);
+	}
+
+	// the order of a category's index on the key; lost points are unscaled, so depend on how it's scored
+	static Comparator<Assignment> comparator(Key key, boolean useWeights) {
+		Comparator<Assignment> byKey;
+		if (key == Key.NAME) {
+			byKey = (a, b) -> compareNames(a.name, b.name);
+		} else if (key == Key.WEIGHT) {
+			byKey = (a, b) -> Double.compare(a.weight, b.weight);
+		} else if (key == Key.SCORE) {
+			byKey = (a, b) -> Double.compare(score(a), score(b));
+		} else {
+			byKey = (a, b) -> Double.compare(lost(a, useWeights), lost(b, useWeights));
+		}
+		return byKey.thenComparing((Assignment assignment) -> assignment.id, IdPrefix.ORDER);
+	}
+
+	protected static double score(Assignment assignment) {
+		return assignment.possible > 0 ? assignment.earned / assignment.possible : Double.NaN;
+	}
+
+	// lost points before scaling to the course: weighted score lost, or points lost
+	protected static double lost(Assignment assignment, boolean useWeights) {
+		if (useWeights) {
+			return assignment.weight * (1 - score(assignment));
+		} else {
+			return assignment.possible - assignment.earned;
+		}
+	}
+
+	// an assignment's values as of the query
+	public static class Match {
+		protected final Category category;
+		protected final Assignment assignment;
+		protected final String name;
+		protected final double score, weight, lost;
+
+		protected Match(Category category, Assignment assignment, double factor) {
+			this.category = category;
+			this.assignment = assignment;
+			name = assignment.name;
+			score = Query.score(assignment);
+			weight = assignment.weight;
+			lost = lost(assignment, category.useWeights) * factor;
+		}
+
+		public Category getCategory() {
+			return category;
+		}
+
+		public Assignment getAssignment() {
+			return assignment;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		// NaN if the assignment has no possible points
+		public double getScore() {
+			return score;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+
+		// NaN if the category isn't scorable
+		public double getLost() {
+			return lost;
+		}
+
+		protected double value(Key key) {
+			return key == Key.SCORE ? score : key == Key.WEIGHT ? weight : lost;
+		}
+	}
+
+	protected static class Filter {
+		protected final Key key;
+		protected final Comparison comparison;
+		protected final double number;
+		protected final String text;
+
+		protected Filter(Key key, Comparison comparison, double number) {
+			this.key = key;
+			this.comparison = comparison;
+			this.number = number;
+			this.text = null;
+		}
+
+		protected Filter(Key key, Comparison comparison, String text) {
+			this.key = key;
+			this.comparison = comparison;
+			this.number = 0;
+			this.text = text;
+		}
+
+		// the match's value against the filter's, with NaN and null names after and before everything
+		protected int compare(Match match) {
+			return key == Key.NAME ? compareNames(match.name, text) : Double.compare(match.value(key), number);
+		}
+
+		protected boolean passes(Match match) {
+			if (key == Key.NAME ? match.name == null : Double.isNaN(match.value(key))) {
+				return false;
+			} else if (comparison == Comparison.CONTAINS) {
+				return match.name.contains(text);
+			}
+			int side = compare(match);
+			if (comparison == Comparison.LESS) {
+				return side < 0;
+			} else if (comparison == Comparison.AT_MOST) {
+				return side <= 0;
+			} else if (comparison == Comparison.EQUAL) {
+				return side == 0;
+			} else if (comparison == Comparison.AT_LEAST) {
+				return side >= 0;
+			} else {
+				return side > 0;
+			}
+		}
+	}
+}
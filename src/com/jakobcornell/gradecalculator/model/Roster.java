@@ -0,0 +1,261 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Grades for a class of students sharing one course structure. Category and assignment names,
+ * weights and possible points come from the course; each student's earned points are kept in one
+ * double[] column per assignment, indexed by student, and the assignments' own earned values are
+ * ignored. An assignment no student has been given points for reads as 0 for everyone.
+ *
+ * Scoring walks each category's assignments once for the whole roster, under the category's lock,
+ * with the per-student work in plain loops over the columns. The roster isn't told when assignments
+ * are removed from the course; scoring notices when some columns no longer belong to any, and
+ * drops them, as prune() does.
+ */
+public class Roster implements java.io.Serializable {
+	private static final long serialVersionUID = 0;
+
+	public final Course course;
+	protected final List<UUID> studentIds = new ArrayList<UUID>();
+	protected final List<String> studentNames = new ArrayList<String>();
+
+	// assignment id to its index in columns; columns all have length capacity
+	protected final Map<UUID, Integer> slots = new HashMap<UUID, Integer>();
+	protected final List<double[]> columns = new ArrayList<double[]>();
+	protected int capacity;
+
+	public Roster(Course course) {
+		this(course, 0);
+	}
+
+	public Roster(Course course, int expectedStudents) {
+		this.course = course;
+		this.capacity = Math.max(expectedStudents, 8);
+	}
+
+	public int getStudentCount() {
+		return studentIds.size();
+	}
+
+	public UUID getStudentId(int student) {
+		return studentIds.get(student);
+	}
+
+	public String getStudentName(int student) {
+		return studentNames.get(student);
+	}
+
+	public void setStudentName(int student, String name) {
+		studentNames.set(student, name);
+	}
+
+	// returns the new student's index
+	public int addStudent(String name) {
+		return addStudent(UUID.randomUUID(), name);
+	}
+
+	public int addStudent(UUID id, String name) {
+		int student = studentIds.size();
+		if (student == capacity) {
+			capacity *= 2;
+			for (int i = 0; i < columns.size(); i += 1) {
+				columns.set(i, Arrays.copyOf(columns.get(i), capacity));
+			}
+		}
+		studentIds.add(id);
+		studentNames.add(name);
+		return student;
+	}
+
+	// later students' indices shift down by one
+	public void removeStudent(int student) {
+		checkStudent(student);
+		int count = studentIds.size();
+		studentIds.remove(student);
+		studentNames.remove(student);
+		for (double[] column : columns) {
+			System.arraycopy(column, student + 1, column, student, count - student - 1);
+			column[count - 1] = 0;
+		}
+	}
+
+	public int indexOf(UUID student) {
+		return studentIds.indexOf(student);
+	}
+
+	public double getEarned(int student, Assignment assignment) {
+		checkStudent(student);
+		Integer slot = slots.get(assignment.id);
+		return slot == null ? 0 : columns.get(slot)[student];
+	}
+
+	public void setEarned(int student, Assignment assignment, double earned) throws IllegalArgumentException {
+		checkStudent(student);
+		if (assignment.category == null || assignment.category.course != course) {
+			throw new IllegalArgumentException("Assignment doesn't belong to the roster's course");
+		}
+		if (!(earned >= 0)) {
+			throw new IllegalArgumentException("Scores cannot be negative");
+		}
+		Integer slot = slots.get(assignment.id);
+		if (slot == null) {
+			slot = columns.size();
+			slots.put(assignment.id, slot);
+			columns.add(new double[capacity]);
+		}
+		columns.get(slot)[student] = earned;
+	}
+
+	protected void checkStudent(int student) throws IndexOutOfBoundsException {
+		if (student < 0 || student >= studentIds.size()) {
+			throw new IndexOutOfBoundsException(String.format("No student %d", student));
+		}
+	}
+
+	// each student's course score, in student order
+	public double[] score() throws ScoringException {
+		return score(0, studentIds.size());
+	}
+
+	public double score(int student) throws ScoringException {
+		checkStudent(student);
+		return score(student, student + 1)[0];
+	}
+
+	// course scores for students from through to - 1
+	public double[] score(int from, int to) throws ScoringException {
+		if (from < 0 || to > studentIds.size() || from > to) {
+			throw new IndexOutOfBoundsException(String.format("No students %d to %d", from, to));
+		}
+		int students = to - from;
+		double[] totals = new double[students], scores = new double[students];
+		double totalWeight = 0;
+		boolean scorable = false;
+		int slotted = 0;
+		for (Category category : categories()) {
+			boolean categoryScorable;
+			double weight;
+			synchronized (category) {
+				categoryScorable = score(category, from, to, scores);
+				weight = category.getWeight();
+				for (Assignment assignment : category.assignments.values()) {
+					if (slots.containsKey(assignment.id)) {
+						slotted += 1;
+					}
+				}
+			}
+			if (categoryScorable) {
+				for (int i = 0; i < students; i += 1) {
+					totals[i] += scores[i] * weight;
+				}
+				totalWeight += weight;
+				scorable = true;
+			}
+		}
+		if (slotted < slots.size()) {
+			prune();
+		}
+		if (!scorable) {
+			throw new ScoringException("No scorable categories");
+		}
+		for (int i = 0; i < students; i += 1) {
+			totals[i] /= totalWeight;
+		}
+		return totals;
+	}
+
+	protected Category[] categories() {
+		synchronized (course) {
+			return course.categories.values().toArray(new Category[0]);
+		}
+	}
+
+	// drops the points of assignments no longer in the course
+	public void prune() {
+		Set<UUID> live = new HashSet<UUID>();
+		for (Category category : categories()) {
+			synchronized (category) {
+				for (Assignment assignment : category.assignments.values()) {
+					live.add(assignment.id);
+				}
+			}
+		}
+		List<double[]> kept = new ArrayList<double[]>();
+		for (Iterator<Map.Entry<UUID, Integer>> entries = slots.entrySet().iterator(); entries.hasNext(); ) {
+			Map.Entry<UUID, Integer> entry = entries.next();
+			if (live.contains(entry.getKey())) {
+				kept.add(columns.get(entry.getValue()));
+				entry.setValue(kept.size() - 1);
+			} else {
+				entries.remove();
+			}
+		}
+		columns.clear();
+		columns.addAll(kept);
+	}
+
+	/*
+	 * Fills scores with the category's score for students from through to - 1, or returns false if
+	 * the category isn't scorable. Whether it is depends only on the shared weights and possible
+	 * points, so it's the same for every student. Called with the category's lock held.
+	 */
+	protected boolean score(Category category, int from, int to, double[] scores) {
+		int students = to - from;
+		Arrays.fill(scores, 0, students, 0);
+		if (category.getUseWeights()) {
+			double totalWeight = 0;
+			for (Assignment assignment : category.assignments.values()) {
+				if (!(assignment.possible > 0)) {
+					return false;
+				}
+				totalWeight += assignment.weight;
+			}
+			if (category.assignments.isEmpty()) {
+				return true;
+			}
+			for (Assignment assignment : category.assignments.values()) {
+				Integer slot = slots.get(assignment.id);
+				if (slot != null) {
+					double[] column = columns.get(slot);
+					double weight = assignment.weight, possible = assignment.possible;
+					for (int i = 0; i < students; i += 1) {
+						scores[i] += weight * (column[from + i] / possible);
+					}
+				}
+			}
+			for (int i = 0; i < students; i += 1) {
+				scores[i] /= totalWeight;
+			}
+		} else {
+			double possible = 0;
+			for (Assignment assignment : category.assignments.values()) {
+				possible += assignment.possible;
+			}
+			if (!(possible > 0)) {
+				return false;
+			}
+			for (Assignment assignment : category.assignments.values()) {
+				Integer slot = slots.get(assignment.id);
+				if (slot != null) {
+					double[] column = columns.get(slot);
+					for (int i = 0; i < students; i += 1) {
+						scores[i] += column[from + i];
+					}
+				}
+			}
+			for (int i = 0; i < students; i += 1) {
+				scores[i] /= possible;
+			}
+		}
+		return true;
+	}
+}
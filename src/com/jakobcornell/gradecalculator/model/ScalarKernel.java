@@ -0,0 +1,39 @@
+package com.jakobcornell.gradecalculator.model;
+
+class ScalarKernel implements ColumnKernel {
+	public int sum(double[] weights, double[] earned, double[] possible, int length, double[] sums) {
+		double earnedSum = 0, earnedCompensation = 0, possibleSum = 0, possibleCompensation = 0;
+		double weightSum = 0, weightCompensation = 0, termSum = 0, termCompensation = 0;
+		int positive = 0;
+		for (int i = 0; i < length; i += 1) {
+			double term = 0;
+			if (possible[i] > 0) {
+				term = weights[i] * (earned[i] / possible[i]);
+				positive += 1;
+			}
+
+			double total = earnedSum + earned[i];
+			earnedCompensation += compensation(earnedSum, earned[i], total);
+			earnedSum = total;
+			total = possibleSum + possible[i];
+			possibleCompensation += compensation(possibleSum, possible[i], total);
+			possibleSum = total;
+			total = weightSum + weights[i];
+			weightCompensation += compensation(weightSum, weights[i], total);
+			weightSum = total;
+			total = termSum + term;
+			termCompensation += compensation(termSum, term, total);
+			termSum = total;
+		}
+		sums[EARNED] = earnedSum + earnedCompensation;
+		sums[POSSIBLE] = possibleSum + possibleCompensation;
+		sums[WEIGHT] = weightSum + weightCompensation;
+		sums[WEIGHTED_SCORE] = termSum + termCompensation;
+		return positive;
+	}
+
+	// the rounding error of sum + value = total, as in Sum.accumulate
+	static double compensation(double sum, double value, double total) {
+		return Math.abs(sum) >= Math.abs(value) ? (sum - total) + value : (value - total) + sum;
+	}
+}
@@ -0,0 +1,43 @@
+package com.jakobcornell.gradecalculator.model;
+
+/*
+ * Running sum supporting removal of previously added terms. Uses Neumaier compensation so that
+ * adding and later subtracting terms doesn't leave rounding error behind, and returns exactly 0
+ * once every nonzero term has been subtracted back out.
+ */
+class Sum {
+	protected double sum, compensation;
+	protected int nonzero;
+
+	void add(double value) {
+		if (value != 0) {
+			nonzero += 1;
+			accumulate(value);
+		}
+	}
+
+	void subtract(double value) {
+		if (value != 0) {
+			nonzero -= 1;
+			if (nonzero == 0) {
+				sum = compensation = 0;
+			} else {
+				accumulate(-value);
+			}
+		}
+	}
+
+	protected void accumulate(double value) {
+		double total = sum + value;
+		if (Math.abs(sum) >= Math.abs(value)) {
+			compensation += (sum - total) + value;
+		} else {
+			compensation += (value - total) + sum;
+		}
+		sum = total;
+	}
+
+	double value() {
+		return sum + compensation;
+	}
+}
@@ -0,0 +1,83 @@
+package com.jakobcornell.gradecalculator.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * ColumnKernel over SIMD lanes. Each lane keeps its own compensated sums, which are combined at the
+ * end, and the entries past the last full vector are summed as in ScalarKernel. Built separately,
+ * with the incubator module; ColumnKernel.load falls back to ScalarKernel when it isn't available.
+ */
+class VectorKernel implements ColumnKernel {
+	protected static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	public int sum(double[] weights, double[] earned, double[] possible, int length, double[] sums) {
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector earnedSum = zero, earnedCompensation = zero, possibleSum = zero, possibleCompensation = zero;
+		DoubleVector weightSum = zero, weightCompensation = zero, termSum = zero, termCompensation = zero;
+		int positive = 0, i = 0;
+		for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+			DoubleVector weight = DoubleVector.fromArray(SPECIES, weights, i);
+			DoubleVector assignmentEarned = DoubleVector.fromArray(SPECIES, earned, i);
+			DoubleVector assignmentPossible = DoubleVector.fromArray(SPECIES, possible, i);
+			VectorMask<Double> scorable = assignmentPossible.compare(VectorOperators.GT, 0);
+			DoubleVector term = weight.mul(assignmentEarned.div(assignmentPossible)).blend(0, scorable.not());
+			positive += scorable.trueCount();
+
+			DoubleVector total = earnedSum.add(assignmentEarned);
+			earnedCompensation = earnedCompensation.add(compensation(earnedSum, assignmentEarned, total));
+			earnedSum = total;
+			total = possibleSum.add(assignmentPossible);
+			possibleCompensation = possibleCompensation.add(compensation(possibleSum, assignmentPossible, total));
+			possibleSum = total;
+			total = weightSum.add(weight);
+			weightCompensation = weightCompensation.add(compensation(weightSum, weight, total));
+			weightSum = total;
+			total = termSum.add(term);
+			termCompensation = termCompensation.add(compensation(termSum, term, total));
+			termSum = total;
+		}
+
+		double[] totals = new double[8];
+		for (int lane = 0; lane < SPECIES.length(); lane += 1) {
+			accumulate(totals, EARNED, earnedSum.lane(lane));
+			accumulate(totals, EARNED, earnedCompensation.lane(lane));
+			accumulate(totals, POSSIBLE, possibleSum.lane(lane));
+			accumulate(totals, POSSIBLE, possibleCompensation.lane(lane));
+			accumulate(totals, WEIGHT, weightSum.lane(lane));
+			accumulate(totals, WEIGHT, weightCompensation.lane(lane));
+			accumulate(totals, WEIGHTED_SCORE, termSum.lane(lane));
+			accumulate(totals, WEIGHTED_SCORE, termCompensation.lane(lane));
+		}
+		for (; i < length; i += 1) {
+			double term = 0;
+			if (possible[i] > 0) {
+				term = weights[i] * (earned[i] / possible[i]);
+				positive += 1;
+			}
+			accumulate(totals, EARNED, earned[i]);
+			accumulate(totals, POSSIBLE, possible[i]);
+			accumulate(totals, WEIGHT, weights[i]);
+			accumulate(totals, WEIGHTED_SCORE, term);
+		}
+		for (int j = 0; j < 4; j += 1) {
+			sums[j] = totals[2 * j] + totals[2 * j + 1];
+		}
+		return positive;
+	}
+
+	// adds the value to the compensated sum at totals[2 * index], with its compensation after it
+	protected static void accumulate(double[] totals, int index, double value) {
+		double total = totals[2 * index] + value;
+		totals[2 * index + 1] += ScalarKernel.compensation(totals[2 * index], value, total);
+		totals[2 * index] = total;
+	}
+
+	// the rounding error of sum + value = total, per lane, as in Sum.accumulate
+	protected static DoubleVector compensation(DoubleVector sum, DoubleVector value, DoubleVector total) {
+		VectorMask<Double> larger = sum.abs().compare(VectorOperators.GE, value.abs());
+		return value.sub(total).add(sum).blend(sum.sub(total).add(value), larger);
+	}
+}
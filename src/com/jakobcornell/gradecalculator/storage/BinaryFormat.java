@@ -0,0 +1,375 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.IdPrefix;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Versioned binary course format. All values are little-endian.
+ *
+ *   header        int magic, int version, int category count, int assignment count
+ *   categories    per category: long id msb, long id lsb, double weight, int first assignment,
+ *                 int assignment count, int name offset, int flags (bit 0: uses weights)
+ *   assignments   one column per field, each holding every assignment in order: long id msb,
+ *                 long id lsb, double weight, double earned, double possible, int name offset
+ *   strings       course name, then category names, then assignment names, each an int byte
+ *                 length (-1 for null) followed by UTF-8 bytes
+ *
+ * Categories are sorted by id, and each category's assignments are contiguous and sorted by id.
+ * Name offsets are relative to the start of the string section.
+ */
+public class BinaryFormat {
+	public static final int MAGIC = 0x43445247; // "GRDC"
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 16;
+	static final int CATEGORY_SIZE = 40;
+	static final int ASSIGNMENT_SIZE = 44;
+
+	// field offsets within a category record
+	static final int CATEGORY_ID_MSB = 0, CATEGORY_ID_LSB = 8, CATEGORY_WEIGHT = 16, CATEGORY_FIRST = 24;
+	static final int CATEGORY_COUNT = 28, CATEGORY_NAME = 32, CATEGORY_FLAGS = 36;
+
+	protected static final int BUFFER_SIZE = 1 << 16;
+
+	static long categoriesOffset() {
+		return HEADER_SIZE;
+	}
+
+	static long columnOffset(int categoryCount, int assignmentCount, int column) {
+		return HEADER_SIZE + (long) CATEGORY_SIZE * categoryCount + 8L * assignmentCount * column;
+	}
+
+	static long stringsOffset(int categoryCount, int assignmentCount) {
+		return HEADER_SIZE + (long) CATEGORY_SIZE * categoryCount + (long) ASSIGNMENT_SIZE * assignmentCount;
+	}
+
+	// column indices for columnOffset
+	static final int ID_MSB = 0, ID_LSB = 1, WEIGHT = 2, EARNED = 3, POSSIBLE = 4, NAME = 5;
+
+	public static boolean isBinaryFormat(byte[] prefix) {
+		return prefix.length >= 4 && ByteBuffer.wrap(prefix).order(ByteOrder.LITTLE_ENDIAN).getInt(0) == MAGIC;
+	}
+
+	public static void write(Course course, Path path) throws IOException {
+		long start = Metrics.start();
+		try (
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		) {
+			write(course, channel);
+			Metrics.persisted("binary write", channel.position(), start);
+		}
+	}
+
+	public static void write(Course course, WritableByteChannel channel) throws IOException {
+		Category[] categories = course.categories.values().toArray(new Category[0]);
+		Arrays.sort(categories, (a, b) -> IdPrefix.ORDER.compare(a.id, b.id));
+
+		int assignmentCount = 0;
+		for (Category category : categories) {
+			assignmentCount += category.assignments.size();
+		}
+		Assignment[] assignments = new Assignment[assignmentCount];
+		int[] firsts = new int[categories.length];
+		int next = 0;
+		for (int i = 0; i < categories.length; i += 1) {
+			firsts[i] = next;
+			for (Assignment assignment : categories[i].assignments.values()) {
+				assignments[next] = assignment;
+				next += 1;
+			}
+			Arrays.sort(assignments, firsts[i], next, (a, b) -> IdPrefix.ORDER.compare(a.id, b.id));
+		}
+
+		Output out = new Output(channel);
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putInt(categories.length);
+		out.putInt(assignmentCount);
+
+		long nameOffset = encodedLength(course.getName());
+		for (int i = 0; i < categories.length; i += 1) {
+			Category category = categories[i];
+			out.putLong(category.id.getMostSignificantBits());
+			out.putLong(category.id.getLeastSignificantBits());
+			out.putDouble(category.getWeight());
+			out.putInt(firsts[i]);
+			out.putInt(category.assignments.size());
+			out.putInt(checkOffset(nameOffset));
+			out.putInt(category.getUseWeights() ? 1 : 0);
+			nameOffset += encodedLength(category.getName());
+		}
+
+		for (Assignment assignment : assignments) {
+			out.putLong(assignment.id.getMostSignificantBits());
+		}
+		for (Assignment assignment : assignments) {
+			out.putLong(assignment.id.getLeastSignificantBits());
+		}
+		for (Assignment assignment : assignments) {
+			out.putDouble(assignment.getWeight());
+		}
+		for (Assignment assignment : assignments) {
+			out.putDouble(assignment.getEarned());
+		}
+		for (Assignment assignment : assignments) {
+			out.putDouble(assignment.getPossible());
+		}
+		for (Assignment assignment : assignments) {
+			out.putInt(checkOffset(nameOffset));
+			nameOffset += encodedLength(assignment.getName());
+		}
+
+		out.putString(course.getName());
+		for (Category category : categories) {
+			out.putString(category.getName());
+		}
+		for (Assignment assignment : assignments) {
+			out.putString(assignment.getName());
+		}
+		out.flush();
+	}
+
+	protected static int checkOffset(long offset) throws IOException {
+		if (offset > Integer.MAX_VALUE) {
+			throw new IOException("Course names exceed the format's 2 GiB limit");
+		}
+		return (int) offset;
+	}
+
+	// length of a string as stored in the string section, computed without encoding it
+	protected static long encodedLength(String string) {
+		if (string == null) {
+			return 4;
+		}
+		long length = 4;
+		for (int i = 0; i < string.length(); i += 1) {
+			char c = string.charAt(i);
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+				length += 4;
+				i += 1;
+			} else if (Character.isSurrogate(c)) {
+				length += 1; // unpaired surrogates encode as '?'
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	public static Course read(Path path) throws IOException {
+		long start = Metrics.start();
+		try (
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		) {
+			Course course = read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			Metrics.persisted("binary read", channel.size(), start);
+			return course;
+		}
+	}
+
+	public static Course read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (channel.read(buffer) >= 0) {
+			if (!buffer.hasRemaining()) {
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+			}
+		}
+		return read(buffer.flip());
+	}
+
+	public static Course read(ByteBuffer buffer) throws IOException {
+		try {
+			buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a binary course file");
+			}
+			if (buffer.getInt(4) != VERSION) {
+				throw new IOException(String.format("Unsupported course format version %d", buffer.getInt(4)));
+			}
+			int categoryCount = buffer.getInt(8);
+			int assignmentCount = buffer.getInt(12);
+			if (categoryCount < 0 || assignmentCount < 0 || stringsOffset(categoryCount, assignmentCount) > buffer.limit()) {
+				throw new EOFException("Truncated course file");
+			}
+
+			Strings strings = new Strings(buffer, stringsOffset(categoryCount, assignmentCount));
+			int msbs = (int) columnOffset(categoryCount, assignmentCount, ID_MSB);
+			int lsbs = (int) columnOffset(categoryCount, assignmentCount, ID_LSB);
+			int weights = (int) columnOffset(categoryCount, assignmentCount, WEIGHT);
+			int earneds = (int) columnOffset(categoryCount, assignmentCount, EARNED);
+			int possibles = (int) columnOffset(categoryCount, assignmentCount, POSSIBLE);
+			int names = (int) columnOffset(categoryCount, assignmentCount, NAME);
+
+			Course course = new Course(strings.get(0), categoryCount);
+			for (int i = 0; i < categoryCount; i += 1) {
+				int record = HEADER_SIZE + CATEGORY_SIZE * i;
+				int first = buffer.getInt(record + CATEGORY_FIRST);
+				int count = buffer.getInt(record + CATEGORY_COUNT);
+				if (first < 0 || count < 0 || first > assignmentCount - count) {
+					throw new IOException("Corrupt course file");
+				}
+				Category category = new Category(
+					new UUID(buffer.getLong(record + CATEGORY_ID_MSB), buffer.getLong(record + CATEGORY_ID_LSB)),
+					strings.get(buffer.getInt(record + CATEGORY_NAME)),
+					buffer.getDouble(record + CATEGORY_WEIGHT),
+					(buffer.getInt(record + CATEGORY_FLAGS) & 1) != 0,
+					count
+				);
+				for (int j = first; j < first + count; j += 1) {
+					Assignment assignment = new Assignment(
+						new UUID(buffer.getLong(msbs + 8 * j), buffer.getLong(lsbs + 8 * j)),
+						strings.get(buffer.getInt(names + 4 * j)),
+						buffer.getDouble(weights + 8 * j),
+						buffer.getDouble(earneds + 8 * j),
+						buffer.getDouble(possibles + 8 * j)
+					);
+					category.assignments.put(assignment.id, assignment);
+				}
+				course.categories.put(category.id, category);
+			}
+			return course;
+		} catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Corrupt course file", e);
+		}
+	}
+
+	// one step of the record hashes used to compare course files without decoding them
+	static long mix(long hash, long value) {
+		return Long.rotateLeft((hash ^ value) * 0x9e3779b97f4a7c15L, 27);
+	}
+
+	// decodes names from the string section of a buffer
+	static class Strings {
+		protected final ByteBuffer buffer;
+		protected final long base;
+		protected byte[] scratch = new byte[64];
+
+		Strings(ByteBuffer buffer, long base) {
+			this.buffer = buffer;
+			this.base = base;
+		}
+
+		String get(int offset) throws IOException {
+			if (offset < 0 || base + offset + 4 > buffer.limit()) {
+				throw new IOException("Corrupt course file");
+			}
+			int position = (int) (base + offset);
+			int length = buffer.getInt(position);
+			if (length < 0) {
+				return null;
+			}
+			if (buffer.hasArray()) {
+				return new String(buffer.array(), buffer.arrayOffset() + position + 4, length, StandardCharsets.UTF_8);
+			}
+			if (scratch.length < length) {
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			}
+			buffer.get(position + 4, scratch, 0, length);
+			return new String(scratch, 0, length, StandardCharsets.UTF_8);
+		}
+
+		// hash of the encoded name, equal for equal names in any two files
+		long hash(int offset) throws IOException {
+			if (offset < 0 || base + offset + 4 > buffer.limit()) {
+				throw new IOException("Corrupt course file");
+			}
+			int position = (int) (base + offset);
+			int length = buffer.getInt(position);
+			if (length < 0) {
+				return mix(0, -1);
+			} else if (length > buffer.limit() - position - 4) {
+				throw new IOException("Corrupt course file");
+			}
+			long hash = mix(0, length);
+			int i = position + 4, end = i + length;
+			for (; i + 8 <= end; i += 8) {
+				hash = mix(hash, buffer.getLong(i));
+			}
+			long tail = 0;
+			for (; i < end; i += 1) {
+				tail = tail << 8 | (buffer.get(i) & 0xff);
+			}
+			return mix(hash, tail);
+		}
+	}
+
+	// buffered little-endian writer over a channel
+	protected static class Output {
+		protected final WritableByteChannel channel;
+		protected final ByteBuffer buffer;
+
+		protected Output(WritableByteChannel channel) {
+			this.channel = channel;
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		protected void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		protected void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		protected void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		protected void putDouble(double value) throws IOException {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		protected void putString(String string) throws IOException {
+			if (string == null) {
+				putInt(-1);
+			} else {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				putInt(bytes.length);
+				if (bytes.length <= buffer.capacity()) {
+					ensure(bytes.length);
+					buffer.put(bytes);
+				} else {
+					flush();
+					ByteBuffer large = ByteBuffer.wrap(bytes);
+					while (large.hasRemaining()) {
+						channel.write(large);
+					}
+				}
+			}
+		}
+
+		protected void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.IdPrefix;
+
+import java.util.Objects;
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+ * The differences between two course files, written as they're found, one tab-separated line each:
+ *
+ *   +  category <id> <name> <weight> <uses weights>
+ *   +  assignment <category id> <id> <name> <weight> <earned> <possible>
+ *   -  category <id>
+ *   -  assignment <category id> <id>
+ *   ~  course name <before> <after>
+ *   ~  category <id> <field> <before> <after>
+ *   ~  assignment <category id> <id> <field> <before> <after>
+ *
+ * An added category is followed by its assignments; a removed one isn't. Both files keep records
+ * sorted by id, so they're compared in a single merge join over the two mappings. Records whose
+ * hashes match are taken to be unchanged without decoding them, so only changed records' names are
+ * ever decoded, and nothing is held in memory but the line being written.
+ */
+public class CourseDiff {
+	protected final MappedCourse before, after;
+	protected final Writer out;
+	protected long changes;
+
+	public CourseDiff(MappedCourse before, MappedCourse after, Writer out) {
+		this.before = before;
+		this.after = after;
+		this.out = out;
+	}
+
+	// writes every difference, returning the number of lines written
+	public long run() throws IOException {
+		changes = 0;
+		field("course", "name", before.getName(), after.getName());
+		int i = 0, j = 0;
+		while (i < before.getCategoryCount() || j < after.getCategoryCount()) {
+			int order = i == before.getCategoryCount() ? 1 : j == after.getCategoryCount() ? -1 : compare(before, -1, i, after, j);
+			if (order < 0) {
+				line(String.format("-\tcategory\t%s", before.getCategoryId(i)));
+				i += 1;
+			} else if (order > 0) {
+				addCategory(j);
+				j += 1;
+			} else {
+				if (before.hashCategory(i) != after.hashCategory(j)) {
+					String record = String.format("category\t%s", before.getCategoryId(i));
+					field(record, "name", before.getCategoryName(i), after.getCategoryName(j));
+					field(record, "weight", before.getCategoryWeight(i), after.getCategoryWeight(j));
+					field(record, "uses weights", before.getCategoryUseWeights(i), after.getCategoryUseWeights(j));
+				}
+				assignments(i, j);
+				i += 1;
+				j += 1;
+			}
+		}
+		return changes;
+	}
+
+	protected void assignments(int beforeCategory, int afterCategory) throws IOException {
+		int i = before.getFirstAssignment(beforeCategory), iEnd = i + before.getAssignmentCount(beforeCategory);
+		int j = after.getFirstAssignment(afterCategory), jEnd = j + after.getAssignmentCount(afterCategory);
+		String category = before.getCategoryId(beforeCategory).toString();
+		while (i < iEnd || j < jEnd) {
+			int order = i == iEnd ? 1 : j == jEnd ? -1 : compare(before, beforeCategory, i, after, j);
+			if (order < 0) {
+				line(String.format("-\tassignment\t%s\t%s", category, before.getAssignmentId(i)));
+				i += 1;
+			} else if (order > 0) {
+				addAssignment(category, j);
+				j += 1;
+			} else {
+				if (before.hashAssignment(i) != after.hashAssignment(j)) {
+					String record = String.format("assignment\t%s\t%s", category, before.getAssignmentId(i));
+					field(record, "name", before.getAssignmentName(i), after.getAssignmentName(j));
+					field(record, "weight", before.getAssignmentWeight(i), after.getAssignmentWeight(j));
+					field(record, "earned", before.getAssignmentEarned(i), after.getAssignmentEarned(j));
+					field(record, "possible", before.getAssignmentPossible(i), after.getAssignmentPossible(j));
+				}
+				i += 1;
+				j += 1;
+			}
+		}
+	}
+
+	protected void addCategory(int index) throws IOException {
+		String category = after.getCategoryId(index).toString();
+		line(String.format("+\tcategory\t%s\t%s\t%s\t%s", category, after.getCategoryName(index), after.getCategoryWeight(index), after.getCategoryUseWeights(index)));
+		int first = after.getFirstAssignment(index);
+		for (int j = first; j < first + after.getAssignmentCount(index); j += 1) {
+			addAssignment(category, j);
+		}
+	}
+
+	protected void addAssignment(String category, int index) throws IOException {
+		line(String.format(
+			"+\tassignment\t%s\t%s\t%s\t%s\t%s\t%s",
+			category,
+			after.getAssignmentId(index),
+			after.getAssignmentName(index),
+			after.getAssignmentWeight(index),
+			after.getAssignmentEarned(index),
+			after.getAssignmentPossible(index)
+		));
+	}
+
+	// doubles are compared as Double.equals does, so NaN equals itself and 0.0 doesn't equal -0.0
+	protected void field(String record, String field, Object before, Object after) throws IOException {
+		if (!Objects.equals(before, after)) {
+			line(String.format("~\t%s\t%s\t%s\t%s", record, field, before, after));
+		}
+	}
+
+	protected void line(String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+		changes += 1;
+	}
+
+	// order of two records' ids: categories if category is -1, otherwise assignments
+	static int compare(MappedCourse a, int category, int i, MappedCourse b, int j) {
+		return IdPrefix.compare(a.msb(category, i), a.lsb(category, i), b.msb(category, j), b.lsb(category, j));
+	}
+}
@@ -0,0 +1,209 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.io.IOException;
+
+/*
+ * Three-way merge of two course files edited separately from a common base, record by record on
+ * their ids. A record changed on only one side takes that side's change; one changed on both has
+ * its fields merged the same way, and a field changed differently on each side is a conflict,
+ * which keeps ours. A record removed on one side and changed on the other is also a conflict, and
+ * keeps the changed record, so a merge never loses an edit. Conflicts are reported one
+ * tab-separated line each:
+ *
+ *   course <description>
+ *   category <id> <description>
+ *   assignment <category id> <id> <description>
+ *
+ * All three files are read in one merge join over their mappings, as in CourseDiff, and records
+ * whose hashes match the base's are taken to be unchanged without decoding them.
+ */
+public class CourseMerge {
+	// the base value of a field whose record isn't in the base
+	protected static final Object ABSENT = new Object() {
+		public String toString() {
+			return "none";
+		}
+	};
+
+	protected final MappedCourse base, ours, theirs;
+	protected final List<String> conflicts = new ArrayList<String>();
+
+	public CourseMerge(MappedCourse base, MappedCourse ours, MappedCourse theirs) {
+		this.base = base;
+		this.ours = ours;
+		this.theirs = theirs;
+	}
+
+	public Course run() throws IOException {
+		conflicts.clear();
+		try {
+			Course course = new Course((String) field("course", "name", base.getName(), ours.getName(), theirs.getName()), ours.getCategoryCount());
+			int b = 0, o = 0, t = 0;
+			while (b < base.getCategoryCount() || o < ours.getCategoryCount() || t < theirs.getCategoryCount()) {
+				// the least id at the heads, and where each file has it
+				MappedCourse least = b < base.getCategoryCount() ? base : o < ours.getCategoryCount() ? ours : theirs;
+				int index = least == base ? b : least == ours ? o : t;
+				if (o < ours.getCategoryCount() && CourseDiff.compare(ours, -1, o, least, index) < 0) {
+					least = ours;
+					index = o;
+				}
+				if (t < theirs.getCategoryCount() && CourseDiff.compare(theirs, -1, t, least, index) < 0) {
+					least = theirs;
+					index = t;
+				}
+				int inBase = b < base.getCategoryCount() && CourseDiff.compare(base, -1, b, least, index) == 0 ? b++ : -1;
+				int inOurs = o < ours.getCategoryCount() && CourseDiff.compare(ours, -1, o, least, index) == 0 ? o++ : -1;
+				int inTheirs = t < theirs.getCategoryCount() && CourseDiff.compare(theirs, -1, t, least, index) == 0 ? t++ : -1;
+
+				Category category = category(inBase, inOurs, inTheirs);
+				if (category != null) {
+					course.categories.put(category.id, category);
+				}
+			}
+			return course;
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt course file", e);
+		}
+	}
+
+	// conflicts of the last run
+	public List<String> getConflicts() {
+		return conflicts;
+	}
+
+	// the merged category, or null if it's removed; each index is -1 if the file doesn't have it
+	protected Category category(int b, int o, int t) throws IOException {
+		if (b >= 0 && o < 0 && t < 0) {
+			return null;
+		} else if (b < 0 && o < 0) {
+			return theirs.getCategory(t);
+		} else if (b < 0 && t < 0) {
+			return ours.getCategory(o);
+		} else if (o < 0) {
+			if (theirs.hashContent(t) == base.hashContent(b)) {
+				return null;
+			}
+			conflict(String.format("category\t%s", theirs.getCategoryId(t)), "removed in ours, changed in theirs; kept theirs");
+			return theirs.getCategory(t);
+		} else if (t < 0) {
+			if (ours.hashContent(o) == base.hashContent(b)) {
+				return null;
+			}
+			conflict(String.format("category\t%s", ours.getCategoryId(o)), "removed in theirs, changed in ours; kept ours");
+			return ours.getCategory(o);
+		}
+
+		Category category;
+		if (b >= 0 && ours.hashCategory(o) == base.hashCategory(b)) {
+			category = fields(theirs, t);
+		} else if (b >= 0 && theirs.hashCategory(t) == base.hashCategory(b) || ours.hashCategory(o) == theirs.hashCategory(t)) {
+			category = fields(ours, o);
+		} else {
+			String record = String.format("category\t%s", ours.getCategoryId(o));
+			category = new Category(
+				ours.getCategoryId(o),
+				(String) field(record, "name", b < 0 ? ABSENT : base.getCategoryName(b), ours.getCategoryName(o), theirs.getCategoryName(t)),
+				(Double) field(record, "weight", b < 0 ? ABSENT : base.getCategoryWeight(b), ours.getCategoryWeight(o), theirs.getCategoryWeight(t)),
+				(Boolean) field(record, "uses weights", b < 0 ? ABSENT : base.getCategoryUseWeights(b), ours.getCategoryUseWeights(o), theirs.getCategoryUseWeights(t)),
+				Math.max(ours.getAssignmentCount(o), theirs.getAssignmentCount(t))
+			);
+		}
+		assignments(category, b, o, t);
+		return category;
+	}
+
+	// a category with a file's fields and no assignments yet
+	protected static Category fields(MappedCourse file, int category) throws IOException {
+		return new Category(file.getCategoryId(category), file.getCategoryName(category), file.getCategoryWeight(category), file.getCategoryUseWeights(category), file.getAssignmentCount(category));
+	}
+
+	protected void assignments(Category category, int baseCategory, int oursCategory, int theirsCategory) throws IOException {
+		int b = baseCategory < 0 ? 0 : base.getFirstAssignment(baseCategory);
+		int bEnd = baseCategory < 0 ? 0 : b + base.getAssignmentCount(baseCategory);
+		int o = ours.getFirstAssignment(oursCategory), oEnd = o + ours.getAssignmentCount(oursCategory);
+		int t = theirs.getFirstAssignment(theirsCategory), tEnd = t + theirs.getAssignmentCount(theirsCategory);
+		while (b < bEnd || o < oEnd || t < tEnd) {
+			MappedCourse least = b < bEnd ? base : o < oEnd ? ours : theirs;
+			int index = least == base ? b : least == ours ? o : t;
+			if (o < oEnd && CourseDiff.compare(ours, 0, o, least, index) < 0) {
+				least = ours;
+				index = o;
+			}
+			if (t < tEnd && CourseDiff.compare(theirs, 0, t, least, index) < 0) {
+				least = theirs;
+				index = t;
+			}
+			int inBase = b < bEnd && CourseDiff.compare(base, 0, b, least, index) == 0 ? b++ : -1;
+			int inOurs = o < oEnd && CourseDiff.compare(ours, 0, o, least, index) == 0 ? o++ : -1;
+			int inTheirs = t < tEnd && CourseDiff.compare(theirs, 0, t, least, index) == 0 ? t++ : -1;
+
+			Assignment assignment = assignment(category, inBase, inOurs, inTheirs);
+			if (assignment != null) {
+				category.assignments.put(assignment.id, assignment);
+			}
+		}
+	}
+
+	// the merged assignment, or null if it's removed; each index is -1 if the file doesn't have it
+	protected Assignment assignment(Category category, int b, int o, int t) throws IOException {
+		if (b >= 0 && o < 0 && t < 0) {
+			return null;
+		} else if (b < 0 && o < 0) {
+			return assignment(theirs, t);
+		} else if (b < 0 && t < 0) {
+			return assignment(ours, o);
+		} else if (o < 0) {
+			if (theirs.hashAssignment(t) == base.hashAssignment(b)) {
+				return null;
+			}
+			conflict(String.format("assignment\t%s\t%s", category.id, theirs.getAssignmentId(t)), "removed in ours, changed in theirs; kept theirs");
+			return assignment(theirs, t);
+		} else if (t < 0) {
+			if (ours.hashAssignment(o) == base.hashAssignment(b)) {
+				return null;
+			}
+			conflict(String.format("assignment\t%s\t%s", category.id, ours.getAssignmentId(o)), "removed in theirs, changed in ours; kept ours");
+			return assignment(ours, o);
+		}
+
+		if (b >= 0 && ours.hashAssignment(o) == base.hashAssignment(b)) {
+			return assignment(theirs, t);
+		} else if (b >= 0 && theirs.hashAssignment(t) == base.hashAssignment(b) || ours.hashAssignment(o) == theirs.hashAssignment(t)) {
+			return assignment(ours, o);
+		}
+		String record = String.format("assignment\t%s\t%s", category.id, ours.getAssignmentId(o));
+		return new Assignment(
+			ours.getAssignmentId(o),
+			(String) field(record, "name", b < 0 ? ABSENT : base.getAssignmentName(b), ours.getAssignmentName(o), theirs.getAssignmentName(t)),
+			(Double) field(record, "weight", b < 0 ? ABSENT : base.getAssignmentWeight(b), ours.getAssignmentWeight(o), theirs.getAssignmentWeight(t)),
+			(Double) field(record, "earned", b < 0 ? ABSENT : base.getAssignmentEarned(b), ours.getAssignmentEarned(o), theirs.getAssignmentEarned(t)),
+			(Double) field(record, "possible", b < 0 ? ABSENT : base.getAssignmentPossible(b), ours.getAssignmentPossible(o), theirs.getAssignmentPossible(t))
+		);
+	}
+
+	protected static Assignment assignment(MappedCourse file, int assignment) throws IOException {
+		return new Assignment(file.getAssignmentId(assignment), file.getAssignmentName(assignment), file.getAssignmentWeight(assignment), file.getAssignmentEarned(assignment), file.getAssignmentPossible(assignment));
+	}
+
+	// three-way merge of one field, compared as by equals
+	protected Object field(String record, String field, Object base, Object ours, Object theirs) {
+		if (Objects.equals(ours, theirs) || Objects.equals(theirs, base)) {
+			return ours;
+		} else if (Objects.equals(ours, base)) {
+			return theirs;
+		}
+		conflict(record, String.format("%s: base %s, ours %s, theirs %s; kept ours", field, base, ours, theirs));
+		return ours;
+	}
+
+	protected void conflict(String record, String description) {
+		conflicts.add(String.format("%s\t%s", record, description));
+	}
+}
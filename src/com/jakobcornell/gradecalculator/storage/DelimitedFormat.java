@@ -0,0 +1,236 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * Gradebooks as CSV or TSV, one row per category or assignment, with the columns
+ *
+ *   category, assignment, weight, earned, possible, uses weights
+ *
+ * A row with an empty, unquoted assignment column declares a category: its weight column is the
+ * category's weight and its uses weights column is true or false. Any other row is an assignment in
+ * the most recently declared category of that name; naming a category that hasn't been declared
+ * creates one with weight 1 that doesn't use weights. Fields containing the delimiter, quotes or line
+ * breaks are double-quoted, with quotes doubled, and an assignment without a name is written as ""
+ * so that it isn't read back as a declaration. An optional header row is skipped on import.
+ *
+ * Imports are all or nothing: rows are read into categories of their own, which are only added to
+ * the course once the whole file has been read.
+ */
+public class DelimitedFormat {
+	public static final String[] HEADER = {"category", "assignment", "weight", "earned", "possible", "uses weights"};
+
+	protected final char delimiter;
+
+	public DelimitedFormat(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	// tab-separated for .tsv files, comma-separated otherwise
+	public static DelimitedFormat forPath(Path path) {
+		return new DelimitedFormat(path.toString().toLowerCase().endsWith(".tsv") ? '\t' : ',');
+	}
+
+	public void write(Course course, Path path) throws IOException {
+		long start = Metrics.start();
+		try (
+			Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+		) {
+			write(course, out);
+		}
+		Metrics.persisted("delimited write", Metrics.ENABLED ? Files.size(path) : 0, start);
+	}
+
+	public void write(Course course, Writer out) throws IOException {
+		Writer buffered = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+		writeRow(buffered, HEADER, false);
+		String[] row = new String[HEADER.length];
+		for (Category category : course.categories.values()) {
+			row[0] = category.getName();
+			row[1] = "";
+			row[2] = Double.toString(category.getWeight());
+			row[3] = "";
+			row[4] = "";
+			row[5] = Boolean.toString(category.getUseWeights());
+			writeRow(buffered, row, false);
+			for (Assignment assignment : category.assignments.values()) {
+				row[1] = assignment.getName();
+				row[2] = Double.toString(assignment.getWeight());
+				row[3] = Double.toString(assignment.getEarned());
+				row[4] = Double.toString(assignment.getPossible());
+				row[5] = "";
+				writeRow(buffered, row, true);
+			}
+		}
+		buffered.flush();
+	}
+
+	// an assignment row's empty assignment column is quoted, telling it apart from a declaration
+	protected void writeRow(Writer out, String[] row, boolean assignment) throws IOException {
+		for (int i = 0; i < row.length; i += 1) {
+			if (i > 0) {
+				out.write(delimiter);
+			}
+			String field = row[i] == null ? "" : row[i];
+			if (needsQuotes(field) || assignment && i == 1 && field.isEmpty()) {
+				out.write('"');
+				out.write(field.replace("\"", "\"\""));
+				out.write('"');
+			} else {
+				out.write(field);
+			}
+		}
+		out.write('\n');
+	}
+
+	protected boolean needsQuotes(String field) {
+		for (int i = 0; i < field.length(); i += 1) {
+			char c = field.charAt(i);
+			if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// returns the number of assignments imported
+	public long read(Path path, Course course) throws IOException {
+		long start = Metrics.start();
+		try (
+			Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+		) {
+			long imported = read(in, course);
+			Metrics.persisted("delimited read", Metrics.ENABLED ? Files.size(path) : 0, start);
+			return imported;
+		}
+	}
+
+	public long read(Reader in, Course course) throws IOException {
+		Reader reader = in instanceof BufferedReader ? in : new BufferedReader(in, 1 << 16);
+		// categories in the order they're declared, added to the course once every row has been read
+		List<Category> read = new ArrayList<Category>();
+		Map<String, Category> categories = new HashMap<String, Category>();
+		List<String> row = new ArrayList<String>(HEADER.length);
+		BitSet quoted = new BitSet(HEADER.length);
+		long line = 0, imported = 0;
+		while (readRow(reader, row, quoted)) {
+			line += 1;
+			if (line == 1 && row.get(0).trim().equalsIgnoreCase(HEADER[0])) {
+				continue;
+			}
+			if (row.size() == 1 && row.get(0).isEmpty()) {
+				continue;
+			}
+			try {
+				String categoryName = field(row, 0), assignmentName = field(row, 1);
+				if (assignmentName.isEmpty() && !quoted.get(1)) {
+					Category category = new Category(categoryName, number(field(row, 2), 1), bool(field(row, 5)));
+					read.add(category);
+					categories.put(categoryName, category);
+				} else {
+					Category category = categories.get(categoryName);
+					if (category == null) {
+						category = new Category(categoryName, 1, false);
+						read.add(category);
+						categories.put(categoryName, category);
+					}
+					Assignment assignment = new Assignment(assignmentName, number(field(row, 2), 1), number(field(row, 3), 0), number(field(row, 4), 0));
+					category.assignments.put(assignment.id, assignment);
+					imported += 1;
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IOException(String.format("row %d: %s", line, e.getMessage()));
+			}
+		}
+		for (Category category : read) {
+			course.categories.put(category.id, category);
+		}
+		return imported;
+	}
+
+	protected static String field(List<String> row, int index) {
+		return index < row.size() ? row.get(index) : "";
+	}
+
+	protected static double number(String field, double fallback) throws IllegalArgumentException {
+		field = field.trim();
+		return field.isEmpty() ? fallback : Double.parseDouble(field);
+	}
+
+	protected static boolean bool(String field) throws IllegalArgumentException {
+		field = field.trim();
+		if (field.isEmpty() || field.equalsIgnoreCase("false")) {
+			return false;
+		} else if (field.equalsIgnoreCase("true")) {
+			return true;
+		} else {
+			throw new IllegalArgumentException(String.format("Not true or false: %s", field));
+		}
+	}
+
+	// reads one record into row, and which of its fields were quoted, returning false at the end of input
+	protected boolean readRow(Reader in, List<String> row, BitSet quotedFields) throws IOException {
+		row.clear();
+		quotedFields.clear();
+		StringBuilder field = new StringBuilder();
+		int c = in.read();
+		if (c < 0) {
+			return false;
+		}
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c < 0) {
+					throw new IOException("Unterminated quoted field");
+				} else if (c == '"') {
+					in.mark(1);
+					int next = in.read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						in.reset();
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c < 0 || c == '\n') {
+				row.add(field.toString());
+				return true;
+			} else if (c == '\r') {
+				in.mark(1);
+				if (in.read() != '\n') {
+					in.reset();
+				}
+				row.add(field.toString());
+				return true;
+			} else if (c == delimiter) {
+				row.add(field.toString());
+				field.setLength(0);
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+				quotedFields.set(row.size());
+			} else {
+				field.append((char) c);
+			}
+			c = in.read();
+		}
+	}
+}
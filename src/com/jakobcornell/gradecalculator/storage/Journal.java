@@ -0,0 +1,454 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Append-only log of edits to a course file in the binary format, kept beside it as <file>.journal,
+ * so that saving after a small change writes only the change. The file itself is the snapshot the
+ * journal applies to. The header names that snapshot by size, CRC-32 and modification time, so a
+ * journal left behind when the file is rewritten some other way is ignored rather than replayed
+ * onto the wrong course. Opening a file only hashes it when its size matches but its modification
+ * time doesn't, as after copying it; otherwise the time is enough. Version 1 journals have no
+ * time, and are always checked by hash. All values are little-endian.
+ *
+ *   header    int magic, int version, long snapshot size, int snapshot crc, long snapshot modified
+ *             (in nanoseconds since the epoch)
+ *   records   int payload length, int payload crc, payload
+ *
+ * Payloads start with a type byte. Ids are two longs, and strings are as in BinaryFormat.
+ *
+ *   COURSE             string name
+ *   CATEGORY           id, string name, double weight, byte uses weights
+ *   ASSIGNMENT         category id, id, string name, double weight, double earned, double possible
+ *   REMOVE_CATEGORY    id
+ *   REMOVE_ASSIGNMENT  category id, id
+ *
+ * CATEGORY and ASSIGNMENT set every field, adding the category or assignment if it isn't there.
+ * Records are held in memory until commit, which appends them all and forces them to disk once.
+ * Replay stops at the first incomplete or corrupt record, which is what a crash during a commit
+ * leaves at the end of the file.
+ */
+public class Journal implements Closeable {
+	public static final int MAGIC = 0x4a445247; // "GRDJ"
+	public static final int VERSION = 2;
+
+	static final int HEADER_SIZE = 28, VERSION_1_HEADER_SIZE = 20;
+	static final byte COURSE = 1, CATEGORY = 2, ASSIGNMENT = 3, REMOVE_CATEGORY = 4, REMOVE_ASSIGNMENT = 5;
+
+	// names of the journal beside a file, and of the temporary files snapshots are written to
+	public static final String SUFFIX = ".journal", TEMPORARY_SUFFIX = ".tmp";
+
+	// journals at least this large are compacted once they outgrow their snapshot
+	protected static final long COMPACTION_MINIMUM = 1 << 20;
+	protected static final long CHECKSUM_CHUNK = 1 << 30;
+
+	protected final Path file;
+	protected final FileChannel channel;
+	protected final long snapshotSize;
+	protected final int headerSize;
+	protected ByteBuffer pending = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+
+	protected Journal(Path file, FileChannel channel, long snapshotSize, int headerSize) {
+		this.file = file;
+		this.channel = channel;
+		this.snapshotSize = snapshotSize;
+		this.headerSize = headerSize;
+	}
+
+	public static Path pathFor(Path file) {
+		return file.resolveSibling(file.getFileName() + SUFFIX);
+	}
+
+	// whether the file is a journal or a temporary file left by a snapshot, rather than a course
+	public static boolean isSidecar(Path file) {
+		String name = file.getFileName().toString();
+		return name.endsWith(SUFFIX) || name.endsWith(TEMPORARY_SUFFIX);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	// replays the file's journal onto the course read from it, returning the number of records applied
+	public static long replay(Path file, Course course) throws IOException {
+		long start = Metrics.start();
+		ByteBuffer journal = readCurrent(file);
+		if (journal == null) {
+			return 0;
+		}
+		long count = scan(journal, course);
+		Metrics.persisted("journal replay", journal.position(), start);
+		return count;
+	}
+
+	// whether the file has a journal that applies to it with records to replay
+	public static boolean hasEdits(Path file) throws IOException {
+		ByteBuffer journal = readCurrent(file);
+		return journal != null && scan(journal, null) > 0;
+	}
+
+	// the file's journal opened for appending, or null if it has none that applies to the file
+	public static Journal open(Path file) throws IOException {
+		file = file.toAbsolutePath().normalize();
+		ByteBuffer journal = readCurrent(file);
+		if (journal == null) {
+			return null;
+		}
+		int headerSize = journal.position();
+		scan(journal, null);
+		FileChannel channel = FileChannel.open(pathFor(file), StandardOpenOption.WRITE);
+		channel.truncate(journal.position());
+		channel.position(journal.position());
+		return new Journal(file, channel, Files.size(file), headerSize);
+	}
+
+	/*
+	 * Writes the whole course to the file and starts it an empty journal. Both are written to
+	 * temporary files and moved into place, the snapshot first, forcing the directory after each
+	 * move; a crash in between leaves the old journal, which no longer matches the snapshot and is
+	 * ignored. The snapshot is hashed as it's written rather than read back.
+	 */
+	public static Journal snapshot(Course course, Path file) throws IOException {
+		long start = Metrics.start();
+		file = file.toAbsolutePath().normalize();
+		Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+		CRC32 crc = new CRC32();
+		try (
+			FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		) {
+			BinaryFormat.write(course, new WritableByteChannel() {
+				public int write(ByteBuffer source) throws IOException {
+					ByteBuffer written = source.duplicate();
+					int count = channel.write(source);
+					crc.update(written.limit(written.position() + count));
+					return count;
+				}
+
+				public boolean isOpen() {
+					return channel.isOpen();
+				}
+
+				public void close() {
+				}
+			});
+			channel.force(true);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		force(file.getParent());
+
+		long size = Files.size(file);
+		Path journal = pathFor(file), journalTemporary = journal.resolveSibling(journal.getFileName() + TEMPORARY_SUFFIX);
+		try (
+			FileChannel channel = FileChannel.open(journalTemporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putLong(size).putInt((int) crc.getValue()).putLong(modified(file)).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+		}
+		Files.move(journalTemporary, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		force(file.getParent());
+
+		FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE);
+		channel.position(HEADER_SIZE);
+		Metrics.persisted("journal snapshot", size, start);
+		return new Journal(file, channel, size, HEADER_SIZE);
+	}
+
+	// makes a move into the directory durable; not every platform can open a directory to force it
+	protected static void force(Path directory) {
+		try (
+			FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ);
+		) {
+			channel.force(true);
+		} catch (IOException e) {
+		}
+	}
+
+	// the journal's contents after the header if it applies to the file, otherwise null
+	protected static ByteBuffer readCurrent(Path file) throws IOException {
+		Path path = pathFor(file);
+		if (!Files.exists(path)) {
+			return null;
+		}
+		ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+		if (journal.limit() < VERSION_1_HEADER_SIZE || journal.getInt(0) != MAGIC) {
+			throw new IOException("Not a course journal");
+		}
+		int version = journal.getInt(4);
+		if (version != 1 && version != VERSION) {
+			throw new IOException(String.format("Unsupported journal format version %d", version));
+		}
+		int headerSize = version == 1 ? VERSION_1_HEADER_SIZE : HEADER_SIZE;
+		if (journal.limit() < headerSize) {
+			throw new IOException("Not a course journal");
+		}
+		if (journal.getLong(8) != Files.size(file)) {
+			return null;
+		}
+		// a file whose size and modification time are both unchanged is taken to be the snapshot without hashing it
+		if ((version == 1 || journal.getLong(20) != modified(file)) && journal.getInt(16) != checksum(file)) {
+			return null;
+		}
+		return journal.position(headerSize);
+	}
+
+	protected static long modified(Path file) throws IOException {
+		return Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+	}
+
+	protected static int checksum(Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		try (
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += CHECKSUM_CHUNK) {
+				crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHECKSUM_CHUNK, size - position)));
+			}
+		}
+		return (int) crc.getValue();
+	}
+
+	/*
+	 * Reads records from the buffer's position up to its end or the first incomplete or corrupt one,
+	 * leaving the position after the last good record, and applies them to the course unless it's
+	 * null. Returns the number of good records.
+	 */
+	protected static long scan(ByteBuffer journal, Course course) throws IOException {
+		CRC32 crc = new CRC32();
+		long count = 0;
+		while (journal.remaining() >= 8) {
+			int start = journal.position();
+			int length = journal.getInt(start), expected = journal.getInt(start + 4);
+			if (length < 1 || length > journal.remaining() - 8) {
+				break;
+			}
+			ByteBuffer payload = journal.slice(start + 8, length).order(ByteOrder.LITTLE_ENDIAN);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != expected) {
+				break;
+			}
+			if (course != null) {
+				apply(payload, course);
+			}
+			journal.position(start + 8 + length);
+			count += 1;
+		}
+		return count;
+	}
+
+	protected static void apply(ByteBuffer record, Course course) throws IOException {
+		try {
+			byte type = record.get();
+			if (type == COURSE) {
+
+				course.setName(getString(record));
+
+			} else if (type == CATEGORY) {
+
+				UUID id = getId(record);
+				String name = getString(record);
+				double weight = record.getDouble();
+				boolean useWeights = record.get() != 0;
+				Category category = course.categories.get(id);
+				if (category == null) {
+					category = new Category(id, name, weight, useWeights, 0);
+					course.categories.put(id, category);
+				} else {
+					category.setName(name);
+					category.setWeight(weight);
+					category.setUseWeights(useWeights);
+				}
+
+			} else if (type == ASSIGNMENT) {
+
+				Category category = category(course, getId(record));
+				UUID id = getId(record);
+				String name = getString(record);
+				double weight = record.getDouble(), earned = record.getDouble(), possible = record.getDouble();
+				Assignment assignment = category.assignments.get(id);
+				if (assignment == null) {
+					assignment = new Assignment(id, name, weight, earned, possible);
+					category.assignments.put(id, assignment);
+				} else {
+					assignment.setName(name);
+					assignment.setWeight(weight);
+					assignment.setEarned(earned);
+					assignment.setPossible(possible);
+				}
+
+			} else if (type == REMOVE_CATEGORY) {
+
+				course.categories.remove(getId(record));
+
+			} else if (type == REMOVE_ASSIGNMENT) {
+
+				category(course, getId(record)).assignments.remove(getId(record));
+
+			} else {
+				throw new IOException(String.format("Unknown journal record type %d", type));
+			}
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt course journal", e);
+		}
+	}
+
+	protected static Category category(Course course, UUID id) throws IOException {
+		Category category = course.categories.get(id);
+		if (category == null) {
+			throw new IOException(String.format("Journal refers to missing category %s", id));
+		}
+		return category;
+	}
+
+	protected static UUID getId(ByteBuffer record) {
+		return new UUID(record.getLong(), record.getLong());
+	}
+
+	protected static String getString(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void course(Course course) {
+		int start = begin(COURSE);
+		putString(course.getName());
+		end(start);
+	}
+
+	public void category(Category category) {
+		int start = begin(CATEGORY);
+		putId(category.id);
+		putString(category.getName());
+		ensure(9);
+		pending.putDouble(category.getWeight());
+		pending.put((byte) (category.getUseWeights() ? 1 : 0));
+		end(start);
+	}
+
+	public void assignment(Category category, Assignment assignment) {
+		int start = begin(ASSIGNMENT);
+		putId(category.id);
+		putId(assignment.id);
+		putString(assignment.getName());
+		ensure(24);
+		pending.putDouble(assignment.getWeight());
+		pending.putDouble(assignment.getEarned());
+		pending.putDouble(assignment.getPossible());
+		end(start);
+	}
+
+	public void removeCategory(Category category) {
+		int start = begin(REMOVE_CATEGORY);
+		putId(category.id);
+		end(start);
+	}
+
+	public void removeAssignment(Category category, Assignment assignment) {
+		int start = begin(REMOVE_ASSIGNMENT);
+		putId(category.id);
+		putId(assignment.id);
+		end(start);
+	}
+
+	protected int begin(byte type) {
+		ensure(9);
+		int start = pending.position();
+		pending.position(start + 8);
+		pending.put(type);
+		return start;
+	}
+
+	protected void end(int start) {
+		int length = pending.position() - start - 8;
+		CRC32 crc = new CRC32();
+		crc.update(pending.array(), start + 8, length);
+		pending.putInt(start, length);
+		pending.putInt(start + 4, (int) crc.getValue());
+	}
+
+	protected void ensure(int bytes) {
+		if (pending.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+			pending = larger.put(pending.flip());
+		}
+	}
+
+	protected void putId(UUID id) {
+		ensure(16);
+		pending.putLong(id.getMostSignificantBits());
+		pending.putLong(id.getLeastSignificantBits());
+	}
+
+	protected void putString(String string) {
+		if (string == null) {
+			ensure(4);
+			pending.putInt(-1);
+		} else {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			ensure(4 + bytes.length);
+			pending.putInt(bytes.length);
+			pending.put(bytes);
+		}
+	}
+
+	// appends the records made since the last commit and forces them to disk
+	public void commit() throws IOException {
+		long start = Metrics.start();
+		long bytes = pending.position();
+		pending.flip();
+		while (pending.hasRemaining()) {
+			channel.write(pending);
+		}
+		pending.clear();
+		channel.force(false);
+		Metrics.persisted("journal commit", bytes, start);
+	}
+
+	// drops the records made since the last commit
+	public void discard() {
+		pending.clear();
+	}
+
+	// whether there are no committed records
+	public boolean isEmpty() throws IOException {
+		return channel.size() == headerSize;
+	}
+
+	// whether replaying the journal has become more work than rewriting the snapshot
+	public boolean needsCompaction() throws IOException {
+		long size = channel.size();
+		return size > COMPACTION_MINIMUM && size > snapshotSize;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+}
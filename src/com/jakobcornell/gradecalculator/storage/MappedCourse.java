@@ -0,0 +1,305 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.model.ScoringException;
+import com.jakobcornell.gradecalculator.model.AmbiguousIdException;
+import com.jakobcornell.gradecalculator.model.IdPrefix;
+import com.jakobcornell.gradecalculator.metrics.Metrics;
+
+import java.util.UUID;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Read-only view of a course file in the binary format, backed by a memory mapping. Records are
+ * decoded only when accessed, and scoring reads the numeric columns in place. Assignment indices
+ * are global across the file; a category's assignments are getFirstAssignment(category) through
+ * getFirstAssignment(category) + getAssignmentCount(category) - 1.
+ */
+public class MappedCourse {
+	protected final ByteBuffer buffer;
+	protected final int categoryCount, assignmentCount;
+	protected final LongBuffer msbs, lsbs;
+	protected final DoubleBuffer weights, earneds, possibles;
+	protected final IntBuffer names;
+	protected final BinaryFormat.Strings strings;
+
+	protected MappedCourse(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.limit() < BinaryFormat.HEADER_SIZE || buffer.getInt(0) != BinaryFormat.MAGIC) {
+			throw new IOException("Not a binary course file");
+		}
+		if (buffer.getInt(4) != BinaryFormat.VERSION) {
+			throw new IOException(String.format("Unsupported course format version %d", buffer.getInt(4)));
+		}
+		categoryCount = buffer.getInt(8);
+		assignmentCount = buffer.getInt(12);
+		if (categoryCount < 0 || assignmentCount < 0 || BinaryFormat.stringsOffset(categoryCount, assignmentCount) > buffer.limit()) {
+			throw new EOFException("Truncated course file");
+		}
+		for (int i = 0; i < categoryCount; i += 1) {
+			int first = getFirstAssignment(i), count = getAssignmentCount(i);
+			if (first < 0 || count < 0 || first > assignmentCount - count) {
+				throw new IOException("Corrupt course file");
+			}
+		}
+
+		msbs = column(BinaryFormat.ID_MSB, 8).asLongBuffer();
+		lsbs = column(BinaryFormat.ID_LSB, 8).asLongBuffer();
+		weights = column(BinaryFormat.WEIGHT, 8).asDoubleBuffer();
+		earneds = column(BinaryFormat.EARNED, 8).asDoubleBuffer();
+		possibles = column(BinaryFormat.POSSIBLE, 8).asDoubleBuffer();
+		names = column(BinaryFormat.NAME, 4).asIntBuffer();
+		strings = new BinaryFormat.Strings(buffer, BinaryFormat.stringsOffset(categoryCount, assignmentCount));
+	}
+
+	protected ByteBuffer column(int column, int width) {
+		int offset = (int) BinaryFormat.columnOffset(categoryCount, assignmentCount, column);
+		return buffer.slice(offset, width * assignmentCount).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// a course encoded in memory, for reading the same way as a file
+	public static MappedCourse of(Course course) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryFormat.write(course, Channels.newChannel(bytes));
+		return new MappedCourse(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	public static MappedCourse open(Path path) throws IOException {
+		try (
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		) {
+			return new MappedCourse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public String getName() throws IOException {
+		return strings.get(0);
+	}
+
+	public int getCategoryCount() {
+		return categoryCount;
+	}
+
+	protected int record(int category) {
+		return (int) BinaryFormat.categoriesOffset() + BinaryFormat.CATEGORY_SIZE * category;
+	}
+
+	public UUID getCategoryId(int category) {
+		int record = record(category);
+		return new UUID(buffer.getLong(record + BinaryFormat.CATEGORY_ID_MSB), buffer.getLong(record + BinaryFormat.CATEGORY_ID_LSB));
+	}
+
+	public String getCategoryName(int category) throws IOException {
+		return strings.get(buffer.getInt(record(category) + BinaryFormat.CATEGORY_NAME));
+	}
+
+	public double getCategoryWeight(int category) {
+		return buffer.getDouble(record(category) + BinaryFormat.CATEGORY_WEIGHT);
+	}
+
+	public boolean getCategoryUseWeights(int category) {
+		return (buffer.getInt(record(category) + BinaryFormat.CATEGORY_FLAGS) & 1) != 0;
+	}
+
+	public int getFirstAssignment(int category) {
+		return buffer.getInt(record(category) + BinaryFormat.CATEGORY_FIRST);
+	}
+
+	public int getAssignmentCount(int category) {
+		return buffer.getInt(record(category) + BinaryFormat.CATEGORY_COUNT);
+	}
+
+	public UUID getAssignmentId(int assignment) {
+		return new UUID(msbs.get(assignment), lsbs.get(assignment));
+	}
+
+	public String getAssignmentName(int assignment) throws IOException {
+		return strings.get(names.get(assignment));
+	}
+
+	public double getAssignmentWeight(int assignment) {
+		return weights.get(assignment);
+	}
+
+	public double getAssignmentEarned(int assignment) {
+		return earneds.get(assignment);
+	}
+
+	public double getAssignmentPossible(int assignment) {
+		return possibles.get(assignment);
+	}
+
+	// index of the only category whose id starts with the prefix, or -1 if there's none
+	public int findCategory(String prefix) throws AmbiguousIdException {
+		return find(prefix, -1, 0, categoryCount);
+	}
+
+	// index of the only assignment in the category whose id starts with the prefix, or -1 if there's none
+	public int findAssignment(int category, String prefix) throws AmbiguousIdException {
+		int first = getFirstAssignment(category);
+		return find(prefix, category, first, first + getAssignmentCount(category));
+	}
+
+	// binary search over sorted ids: category ids if category is -1, otherwise assignment ids
+	protected int find(String prefix, int category, int start, int end) throws AmbiguousIdException {
+		IdPrefix range = IdPrefix.parse(prefix);
+		if (range == null) {
+			return -1;
+		}
+		int low = start, high = end;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (IdPrefix.compare(msb(category, middle), lsb(category, middle), range.lowMsb, range.lowLsb) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (low == end || !range.matches(msb(category, low), lsb(category, low))) {
+			return -1;
+		}
+		if (low + 1 < end && range.matches(msb(category, low + 1), lsb(category, low + 1))) {
+			throw new AmbiguousIdException(String.format("More than one id starts with %s", prefix));
+		}
+		return low;
+	}
+
+	protected long msb(int category, int index) {
+		return category < 0 ? buffer.getLong(record(index) + BinaryFormat.CATEGORY_ID_MSB) : msbs.get(index);
+	}
+
+	protected long lsb(int category, int index) {
+		return category < 0 ? buffer.getLong(record(index) + BinaryFormat.CATEGORY_ID_LSB) : lsbs.get(index);
+	}
+
+	public boolean isCategoryScorable(int category) {
+		int first = getFirstAssignment(category), end = first + getAssignmentCount(category);
+		if (getCategoryUseWeights(category)) {
+			for (int i = first; i < end; i += 1) {
+				if (!(possibles.get(i) > 0)) {
+					return false;
+				}
+			}
+			return true;
+		} else {
+			double possible = 0;
+			for (int i = first; i < end; i += 1) {
+				possible += possibles.get(i);
+			}
+			return possible > 0;
+		}
+	}
+
+	// scores a category from its columns; NaN if it isn't scorable
+	protected double score(int category) {
+		int first = getFirstAssignment(category), end = first + getAssignmentCount(category);
+		if (getCategoryUseWeights(category)) {
+			double totalWeight = 0, weightedScore = 0;
+			for (int i = first; i < end; i += 1) {
+				double possible = possibles.get(i);
+				if (!(possible > 0)) {
+					return Double.NaN;
+				}
+				double weight = weights.get(i);
+				totalWeight += weight;
+				weightedScore += weight * (earneds.get(i) / possible);
+			}
+			return first == end ? 0 : weightedScore / totalWeight;
+		} else {
+			double earned = 0, possible = 0;
+			for (int i = first; i < end; i += 1) {
+				earned += earneds.get(i);
+				possible += possibles.get(i);
+			}
+			return possible > 0 ? earned / possible : Double.NaN;
+		}
+	}
+
+	public double scoreCategory(int category) throws ScoringException {
+		double score = score(category);
+		if (!Double.isNaN(score) || isCategoryScorable(category)) {
+			return score;
+		} else if (getCategoryUseWeights(category)) {
+			throw new ScoringException(String.format("Category %s has an assignment with 0 possible points", getCategoryId(category)));
+		} else {
+			throw new ScoringException(String.format("Category %s has 0 total possible points", getCategoryId(category)));
+		}
+	}
+
+	public double score() throws ScoringException {
+		long start = Metrics.start();
+		double totalWeight = 0, weightedScore = 0;
+		int scorable = 0;
+		for (int i = 0; i < categoryCount; i += 1) {
+			double score = score(i);
+			if (!Double.isNaN(score) || isCategoryScorable(i)) {
+				double weight = getCategoryWeight(i);
+				totalWeight += weight;
+				weightedScore += score * weight;
+				scorable += 1;
+			}
+		}
+		Metrics.scored(start, categoryCount - scorable, scorable == 0);
+		if (scorable > 0) {
+			return weightedScore / totalWeight;
+		} else {
+			throw new ScoringException("No scorable categories");
+		}
+	}
+
+	/*
+	 * Hashes of records, for comparing files record by record without decoding names: equal records
+	 * hash the same in any two files. A category's hash covers its own fields, and its content hash
+	 * also covers its assignments and their ids.
+	 */
+	long hashCategory(int category) throws IOException {
+		int record = record(category);
+		long hash = BinaryFormat.mix(1, Double.doubleToLongBits(buffer.getDouble(record + BinaryFormat.CATEGORY_WEIGHT)));
+		hash = BinaryFormat.mix(hash, buffer.getInt(record + BinaryFormat.CATEGORY_FLAGS) & 1);
+		return BinaryFormat.mix(hash, strings.hash(buffer.getInt(record + BinaryFormat.CATEGORY_NAME)));
+	}
+
+	long hashAssignment(int assignment) throws IOException {
+		long hash = BinaryFormat.mix(2, Double.doubleToLongBits(weights.get(assignment)));
+		hash = BinaryFormat.mix(hash, Double.doubleToLongBits(earneds.get(assignment)));
+		hash = BinaryFormat.mix(hash, Double.doubleToLongBits(possibles.get(assignment)));
+		return BinaryFormat.mix(hash, strings.hash(names.get(assignment)));
+	}
+
+	long hashContent(int category) throws IOException {
+		long hash = hashCategory(category);
+		int first = getFirstAssignment(category);
+		for (int i = first; i < first + getAssignmentCount(category); i += 1) {
+			hash = BinaryFormat.mix(BinaryFormat.mix(hash, msbs.get(i)), lsbs.get(i));
+			hash = BinaryFormat.mix(hash, hashAssignment(i));
+		}
+		return hash;
+	}
+
+	public Category getCategory(int category) throws IOException {
+		Category result = new Category(getCategoryId(category), getCategoryName(category), getCategoryWeight(category), getCategoryUseWeights(category), getAssignmentCount(category));
+		int first = getFirstAssignment(category);
+		for (int i = first; i < first + getAssignmentCount(category); i += 1) {
+			Assignment assignment = new Assignment(getAssignmentId(i), getAssignmentName(i), getAssignmentWeight(i), getAssignmentEarned(i), getAssignmentPossible(i));
+			result.assignments.put(assignment.id, assignment);
+		}
+		return result;
+	}
+
+	public Course load() throws IOException {
+		return BinaryFormat.read(buffer);
+	}
+}
@@ -0,0 +1,78 @@
+package com.jakobcornell.gradecalculator;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+import com.jakobcornell.gradecalculator.storage.BinaryFormat;
+import com.jakobcornell.gradecalculator.storage.Journal;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+ * Grades a directory holding a course saved with a journal of edits beside it, a plain one, and a
+ * temporary file left by a snapshot that didn't finish, with both grade-batch and stats. Only the
+ * two courses should be graded, the journaled one with its edits.
+ *
+ *   BatchGraderTest
+ */
+public class BatchGraderTest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path directory = Files.createTempDirectory("batch-grader-test");
+		try {
+			Course journaled = course(1, 2);
+			Category category = journaled.categories.values().iterator().next();
+			try (
+				Journal journal = Journal.snapshot(journaled, directory.resolve("a.bin"));
+			) {
+				Assignment assignment = new Assignment("late", 1, 2, 2);
+				category.assignments.put(assignment.id, assignment);
+				journal.assignment(category, assignment);
+				journal.commit();
+			}
+			BinaryFormat.write(course(1, 4), directory.resolve("b.bin"));
+			Files.write(directory.resolve("c.bin.tmp"), new byte[] {1, 2, 3});
+
+			List<Path> files = BatchGrader.expand(Arrays.asList(directory.toString()));
+			check(files.equals(Arrays.asList(directory.resolve("a.bin"), directory.resolve("b.bin"))), "expanded to " + files);
+
+			StringWriter out = new StringWriter();
+			(new BatchGrader(2)).grade(files, out);
+			String expected = String.format("%s\t%s\n%s\t%s\n", directory.resolve("a.bin"), 0.75, directory.resolve("b.bin"), 0.25);
+			check(out.toString().equals(expected), "graded as\n" + out);
+
+			GradeStatistics statistics = new GradeStatistics(2);
+			statistics.collect(files);
+			check(statistics.getFiles() == 2 && statistics.getErrors().isEmpty(), "stats counted " + statistics.getFiles() + " files, errors " + statistics.getErrors());
+		} finally {
+			try (
+				Stream<Path> entries = Files.walk(directory);
+			) {
+				entries.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+		System.out.println("BatchGraderTest: passed");
+	}
+
+	// a course of one category holding one assignment with the given points
+	protected static Course course(double earned, double possible) {
+		Course course = new Course("c");
+		Category category = new Category("k", 1, false);
+		Assignment assignment = new Assignment("a", 1, earned, possible);
+		category.assignments.put(assignment.id, assignment);
+		course.categories.put(category.id, category);
+		return course;
+	}
+
+	protected static void check(boolean condition, String what) {
+		if (!condition) {
+			throw new AssertionError(what);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+/*
+ * Random edits to a category's assignments, checked after each against a HashMap holding the same
+ * children: lookups, size, iteration, prefix finds and the sorted index. Children come from a small
+ * pool, so the same instance is often removed and put back, and some ids have a second instance
+ * that replaces the first. Ids share their leading digits often enough for short prefixes to be
+ * ambiguous.
+ *
+ *   ChildMapTest [seeds]
+ */
+public class ChildMapTest {
+	public static void main(String[] args) {
+		int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		for (int seed = 0; seed < seeds; seed += 1) {
+			run(new Random(seed), seed);
+		}
+		System.out.println(String.format("ChildMapTest: %d seeds passed", seeds));
+	}
+
+	protected static void run(Random random, int seed) {
+		int poolSize = 16 + random.nextInt(2000);
+		List<Assignment> pool = new ArrayList<Assignment>();
+		for (int i = 0; i < poolSize; i += 1) {
+			UUID id = new UUID((long) random.nextInt(64) << 58 | random.nextLong() >>> 6, random.nextLong());
+			pool.add(new Assignment(id, "a", 1, 1, 1));
+			if (random.nextInt(8) == 0) {
+				pool.add(new Assignment(id, "b", 1, 1, 1));
+			}
+		}
+
+		Category category = new Category("c", 1, false);
+		Map<UUID, Assignment> expected = new HashMap<UUID, Assignment>();
+		for (int step = 0; step < 20_000; step += 1) {
+			Assignment child = pool.get(random.nextInt(pool.size()));
+			int operation = random.nextInt(10);
+			if (operation < 4) {
+				Assignment current = expected.get(child.id);
+				if (current != null && current != child && random.nextBoolean()) {
+					// a different instance with the id is in the map; take it out first, or let put replace it
+					check(category.assignments.remove(child.id) == current, seed, step, "remove before put");
+					current = null;
+				}
+				check(category.assignments.put(child.id, child) == current, seed, step, "put");
+				expected.put(child.id, child);
+			} else if (operation < 7) {
+				check(category.assignments.remove(child.id) == expected.remove(child.id), seed, step, "remove");
+			} else if (operation < 8) {
+				// remove through an iterator, skipping a few children first
+				Iterator<Assignment> children = category.assignments.values().iterator();
+				for (int skip = random.nextInt(4); skip > 0 && children.hasNext(); skip -= 1) {
+					children.next();
+				}
+				if (children.hasNext()) {
+					Assignment removed = children.next();
+					children.remove();
+					check(expected.remove(removed.id) == removed, seed, step, "iterator remove");
+				}
+			} else {
+				String prefix = child.id.toString().substring(0, random.nextBoolean() ? 36 : 1 + random.nextInt(4));
+				find(category, expected, prefix, seed, step);
+			}
+
+			check(category.assignments.size() == expected.size(), seed, step, "size");
+			check(category.assignments.get(child.id) == expected.get(child.id), seed, step, "get");
+			if (step % 997 == 0) {
+				compare(category, expected, seed, step);
+			}
+		}
+		compare(category, expected, seed, -1);
+	}
+
+	protected static void find(Category category, Map<UUID, Assignment> expected, String prefix, int seed, int step) {
+		Assignment match = null;
+		int matches = 0;
+		for (Assignment assignment : expected.values()) {
+			if (assignment.id.toString().startsWith(prefix)) {
+				match = assignment;
+				matches += 1;
+			}
+		}
+		try {
+			Optional<Assignment> found = category.findAssignment(prefix);
+			check(matches <= 1 && found.orElse(null) == match, seed, step, "find " + prefix);
+		} catch (AmbiguousIdException e) {
+			check(matches > 1, seed, step, "ambiguous " + prefix);
+		}
+	}
+
+	protected static void compare(Category category, Map<UUID, Assignment> expected, int seed, int step) {
+		Map<UUID, Assignment> iterated = new HashMap<UUID, Assignment>();
+		for (Map.Entry<UUID, Assignment> entry : category.assignments.entrySet()) {
+			check(entry.getKey().equals(entry.getValue().id) && iterated.put(entry.getKey(), entry.getValue()) == null, seed, step, "iteration");
+		}
+		check(iterated.equals(expected), seed, step, "contents");
+
+		List<Assignment> sorted = new ArrayList<Assignment>(((ChildMap<Assignment>) category.assignments).sorted());
+		check(sorted.size() == expected.size(), seed, step, "sorted size");
+		for (int i = 0; i < sorted.size(); i += 1) {
+			check(expected.get(sorted.get(i).id) == sorted.get(i), seed, step, "sorted child");
+			check(i == 0 || IdPrefix.ORDER.compare(sorted.get(i - 1).id, sorted.get(i).id) < 0, seed, step, "sorted order");
+		}
+	}
+
+	protected static void check(boolean condition, int seed, int step, String what) {
+		if (!condition) {
+			throw new AssertionError(String.format("seed %d, step %d: %s", seed, step, what));
+		}
+	}
+}
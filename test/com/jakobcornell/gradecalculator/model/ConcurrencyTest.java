@@ -0,0 +1,231 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Threads editing a course while others score it, without any locking of their own. Edits keep
+ * every assignment's earned points at or below its possible points, so every score a reader sees,
+ * whether of an assignment, a category or the course, is in [0, 1]. Snapshots are checked against
+ * scores worked out again from the assignments they hold, and once the writers are done the
+ * course's score against one worked out from a copy built through the getters.
+ *
+ *   ConcurrencyTest [rounds]
+ */
+public class ConcurrencyTest {
+	protected static final int WRITERS = 2, READERS = 2, EDITS = 50_000;
+	protected static final int CATEGORIES = 4, ASSIGNMENTS = 50;
+	protected static final double TOLERANCE = 1e-9;
+
+	public static void main(String[] args) throws InterruptedException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		for (int round = 0; round < rounds; round += 1) {
+			run(round);
+		}
+		System.out.println(String.format("ConcurrencyTest: %d rounds passed", rounds));
+	}
+
+	protected static void run(int round) throws InterruptedException {
+		Random setup = new Random(round);
+		Course course = new Course("c");
+		List<Category> categories = new ArrayList<Category>();
+		List<List<Assignment>> assignments = new ArrayList<List<Assignment>>();
+		for (int c = 0; c < CATEGORIES; c += 1) {
+			Category category = new Category("c" + c, 1 + setup.nextInt(4), setup.nextBoolean());
+			List<Assignment> children = new ArrayList<Assignment>();
+			for (int a = 0; a < ASSIGNMENTS; a += 1) {
+				Assignment assignment = new Assignment("a" + a, 1 + setup.nextInt(4), setup.nextInt(11), 10 + 10 * setup.nextInt(2));
+				category.assignments.put(assignment.id, assignment);
+				children.add(assignment);
+			}
+			course.categories.put(category.id, category);
+			categories.add(category);
+			assignments.add(children);
+		}
+		course.snapshot();
+
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		boolean[] done = {false};
+		List<Thread> writers = new ArrayList<Thread>(), readers = new ArrayList<Thread>();
+		for (int w = 0; w < WRITERS; w += 1) {
+			Random random = new Random(round * 100 + w);
+			writers.add(thread(failure, () -> {
+				for (int edit = 0; edit < EDITS && failure.get() == null; edit += 1) {
+					edit(random, course, categories, assignments);
+				}
+			}));
+		}
+		for (int r = 0; r < READERS; r += 1) {
+			Random random = new Random(round * 100 + 50 + r);
+			readers.add(thread(failure, () -> {
+				for (long read = 0; failure.get() == null; read += 1) {
+					synchronized (done) {
+						if (done[0]) {
+							return;
+						}
+					}
+					read(random, course, categories, assignments, read % 64 == 0);
+				}
+			}));
+		}
+		for (Thread thread : writers) {
+			thread.join();
+		}
+		synchronized (done) {
+			done[0] = true;
+		}
+		for (Thread thread : readers) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(String.format("round %d", round), failure.get());
+		}
+
+		// every category is back in the course, with all of its assignments
+		check(course.categories.size() == CATEGORIES, round, "categories");
+		for (Category category : categories) {
+			check(category.assignments.size() == ASSIGNMENTS, round, "assignments");
+		}
+		check(close(score(course), score(copy(course))), round, "final score");
+		check(close(score(course), score(course.snapshot())), round, "final snapshot");
+	}
+
+	protected static Thread thread(AtomicReference<Throwable> failure, Runnable body) {
+		Thread thread = new Thread(() -> {
+			try {
+				body.run();
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	// one edit; category 0 and each category's first assignment are never removed, so there's always something to score
+	protected static void edit(Random random, Course course, List<Category> categories, List<List<Assignment>> assignments) {
+		int c = random.nextInt(CATEGORIES);
+		Category category = categories.get(c);
+		Assignment assignment = assignments.get(c).get(random.nextInt(ASSIGNMENTS));
+		int operation = random.nextInt(20);
+		if (operation < 6) {
+			assignment.setEarned(random.nextInt(11));
+		} else if (operation < 9) {
+			assignment.setPossible(10 + 10 * random.nextInt(2));
+		} else if (operation < 12) {
+			assignment.setWeight(1 + random.nextInt(4));
+		} else if (operation < 13) {
+			assignment.setName("a" + random.nextInt(10));
+		} else if (operation < 15) {
+			category.setWeight(1 + random.nextInt(4));
+		} else if (operation < 16) {
+			category.setUseWeights(random.nextBoolean());
+		} else if (operation < 19) {
+			if (assignment != assignments.get(c).get(0) && category.assignments.remove(assignment.id) != null) {
+				category.assignments.put(assignment.id, assignment);
+			}
+		} else if (c != 0 && course.categories.remove(category.id) != null) {
+			course.categories.put(category.id, category);
+		}
+	}
+
+	protected static void read(Random random, Course course, List<Category> categories, List<List<Assignment>> assignments, boolean snapshot) {
+		int c = random.nextInt(CATEGORIES);
+		checkScore(score(course), "course");
+		checkScore(score(categories.get(c)), "category");
+		checkScore(score(assignments.get(c).get(random.nextInt(ASSIGNMENTS))), "assignment");
+		if (snapshot) {
+			CourseSnapshot version = course.snapshot();
+			double totalWeight = 0, weightedScore = 0;
+			for (CategorySnapshot category : version.categories.values()) {
+				double score = score(category);
+				checkScore(score, "category snapshot");
+				check(close(score, recompute(category)), -1, "category snapshot against its assignments");
+				totalWeight += category.weight;
+				weightedScore += category.weight * score;
+			}
+			check(close(score(version), weightedScore / totalWeight), -1, "course snapshot against its categories");
+		}
+	}
+
+	protected static double recompute(CategorySnapshot category) {
+		double earned = 0, possible = 0, totalWeight = 0, weightedScore = 0;
+		for (AssignmentSnapshot assignment : category.assignments.values()) {
+			earned += assignment.earned;
+			possible += assignment.possible;
+			totalWeight += assignment.weight;
+			weightedScore += assignment.weight * (assignment.earned / assignment.possible);
+		}
+		return category.useWeights ? weightedScore / totalWeight : earned / possible;
+	}
+
+	// a new course with the same values, read through the getters
+	protected static Course copy(Course course) {
+		Course copy = new Course(course.getName());
+		for (Category category : course.categories.values()) {
+			Category categoryCopy = new Category(category.getName(), category.getWeight(), category.getUseWeights());
+			for (Assignment assignment : category.assignments.values()) {
+				Assignment assignmentCopy = new Assignment(assignment.getName(), assignment.getWeight(), assignment.getEarned(), assignment.getPossible());
+				categoryCopy.assignments.put(assignmentCopy.id, assignmentCopy);
+			}
+			copy.categories.put(categoryCopy.id, categoryCopy);
+		}
+		return copy;
+	}
+
+	protected static double score(Course course) {
+		try {
+			return course.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	protected static double score(CourseSnapshot course) {
+		try {
+			return course.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	protected static double score(Category category) {
+		try {
+			return category.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	protected static double score(CategorySnapshot category) {
+		try {
+			return category.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	protected static double score(Assignment assignment) {
+		try {
+			return assignment.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	protected static boolean close(double a, double b) {
+		return Math.abs(a - b) <= TOLERANCE * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+	}
+
+	protected static void checkScore(double score, String what) {
+		check(score >= -TOLERANCE && score <= 1 + TOLERANCE, -1, String.format("%s score %s", what, score));
+	}
+
+	protected static void check(boolean condition, int round, String what) {
+		if (!condition) {
+			throw new AssertionError(round < 0 ? what : String.format("round %d: %s", round, what));
+		}
+	}
+}
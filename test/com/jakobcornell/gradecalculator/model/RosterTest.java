@@ -0,0 +1,159 @@
+package com.jakobcornell.gradecalculator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Seeded rosters scored against a course per student holding that student's points, then again
+ * after removing assignments, which should also drop their columns. Last, a roster is scored while
+ * another thread removes and re-adds assignments and changes their possible points, which should
+ * neither throw nor give a score outside [0, 1].
+ *
+ *   RosterTest [seeds]
+ */
+public class RosterTest {
+	protected static final double TOLERANCE = 1e-9;
+
+	public static void main(String[] args) throws InterruptedException {
+		int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		for (int seed = 0; seed < seeds; seed += 1) {
+			run(new Random(seed), seed);
+		}
+		concurrent();
+		System.out.println(String.format("RosterTest: %d seeds passed", seeds));
+	}
+
+	protected static void run(Random random, int seed) {
+		Course course = new Course("c");
+		List<Assignment> assignments = new ArrayList<Assignment>();
+		for (int c = 1 + random.nextInt(4); c > 0; c -= 1) {
+			Category category = new Category("k", 1 + random.nextInt(3), random.nextBoolean());
+			for (int a = 1 + random.nextInt(6); a > 0; a -= 1) {
+				Assignment assignment = new Assignment("a", 1 + random.nextInt(3), 0, 1 + random.nextInt(10));
+				category.assignments.put(assignment.id, assignment);
+				assignments.add(assignment);
+			}
+			course.categories.put(category.id, category);
+		}
+		Roster roster = new Roster(course);
+		for (int s = 1 + random.nextInt(20); s > 0; s -= 1) {
+			int student = roster.addStudent("s");
+			for (Assignment assignment : assignments) {
+				if (random.nextInt(4) > 0) {
+					roster.setEarned(student, assignment, random.nextInt((int) assignment.getPossible() + 1));
+				}
+			}
+		}
+		compare(roster, seed, "before removal");
+
+		for (int r = random.nextInt(assignments.size()); r > 0; r -= 1) {
+			Assignment assignment = assignments.remove(random.nextInt(assignments.size()));
+			assignment.category.assignments.remove(assignment.id);
+		}
+		compare(roster, seed, "after removal");
+		int slotted = 0;
+		for (Assignment assignment : assignments) {
+			if (roster.slots.containsKey(assignment.id)) {
+				slotted += 1;
+			}
+		}
+		check(roster.slots.size() == slotted && roster.columns.size() == slotted, seed, "columns of removed assignments kept");
+	}
+
+	// each student's score against the score of a course holding their points
+	protected static void compare(Roster roster, int seed, String when) {
+		double[] scores;
+		try {
+			scores = roster.score();
+		} catch (ScoringException e) {
+			throw new AssertionError(String.format("seed %d, %s", seed, when), e);
+		}
+		for (int student = 0; student < roster.getStudentCount(); student += 1) {
+			Course copy = new Course("c");
+			for (Category category : roster.course.categories.values()) {
+				Category categoryCopy = new Category(category.getName(), category.getWeight(), category.getUseWeights());
+				for (Assignment assignment : category.assignments.values()) {
+					Assignment assignmentCopy = new Assignment(assignment.getName(), assignment.getWeight(), roster.getEarned(student, assignment), assignment.getPossible());
+					categoryCopy.assignments.put(assignmentCopy.id, assignmentCopy);
+				}
+				copy.categories.put(categoryCopy.id, categoryCopy);
+			}
+			try {
+				check(Math.abs(copy.score() - scores[student]) <= TOLERANCE, seed, String.format("%s, student %d: %s, expected %s", when, student, scores[student], copy.score()));
+			} catch (ScoringException e) {
+				throw new AssertionError(String.format("seed %d, %s", seed, when), e);
+			}
+		}
+	}
+
+	protected static void concurrent() throws InterruptedException {
+		Random random = new Random(0);
+		Course course = new Course("c");
+		Category category = new Category("k", 1, false);
+		List<Assignment> assignments = new ArrayList<Assignment>();
+		for (int a = 0; a < 200; a += 1) {
+			Assignment assignment = new Assignment("a", 1, 0, 10);
+			category.assignments.put(assignment.id, assignment);
+			assignments.add(assignment);
+		}
+		course.categories.put(category.id, category);
+		Roster roster = new Roster(course);
+		for (int s = 0; s < 50; s += 1) {
+			int student = roster.addStudent("s");
+			for (Assignment assignment : assignments) {
+				roster.setEarned(student, assignment, random.nextInt(11));
+			}
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		boolean[] done = {false};
+		Thread writer = new Thread(() -> {
+			try {
+				Random edits = new Random(1);
+				for (int edit = 0; edit < 100_000; edit += 1) {
+					// the first assignment stays, so the category always has points
+					Assignment assignment = assignments.get(1 + edits.nextInt(assignments.size() - 1));
+					if (edits.nextBoolean()) {
+						assignment.setPossible(10 + edits.nextInt(10));
+					} else if (category.assignments.remove(assignment.id) != null) {
+						category.assignments.put(assignment.id, assignment);
+					}
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				synchronized (done) {
+					done[0] = true;
+				}
+			}
+		});
+		writer.start();
+		try {
+			while (true) {
+				synchronized (done) {
+					if (done[0]) {
+						break;
+					}
+				}
+				for (double score : roster.score()) {
+					check(score >= -TOLERANCE && score <= 1 + TOLERANCE, -1, "concurrent score " + score);
+				}
+			}
+		} catch (ScoringException e) {
+			throw new AssertionError(e);
+		} finally {
+			writer.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("writer", failure.get());
+		}
+	}
+
+	protected static void check(boolean condition, int seed, String what) {
+		if (!condition) {
+			throw new AssertionError(seed < 0 ? what : String.format("seed %d: %s", seed, what));
+		}
+	}
+}
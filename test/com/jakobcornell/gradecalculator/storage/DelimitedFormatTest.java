@@ -0,0 +1,95 @@
+package com.jakobcornell.gradecalculator.storage;
+
+import com.jakobcornell.gradecalculator.model.Course;
+import com.jakobcornell.gradecalculator.model.Category;
+import com.jakobcornell.gradecalculator.model.Assignment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/*
+ * Seeded courses exported and imported back, in both delimiters, compared field by field. Names
+ * include empty and null ones and ones needing quotes; a null name comes back empty. Also checks
+ * that an import failing partway leaves the course as it was.
+ *
+ *   DelimitedFormatTest [seeds]
+ */
+public class DelimitedFormatTest {
+	protected static final String[] NAMES = {"hw", "", null, "a,b", "tab\there", "say \"hi\"", "two\nlines", "category"};
+
+	public static void main(String[] args) throws IOException {
+		int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		for (int seed = 0; seed < seeds; seed += 1) {
+			Random random = new Random(seed);
+			Course course = course(random);
+			for (char delimiter : new char[] {',', '\t'}) {
+				DelimitedFormat format = new DelimitedFormat(delimiter);
+				StringWriter out = new StringWriter();
+				format.write(course, out);
+				Course imported = new Course("imported");
+				format.read(new StringReader(out.toString()), imported);
+				check(describe(imported).equals(describe(course)), seed, "round trip with " + (delimiter == ',' ? "commas" : "tabs") + "\n" + out);
+			}
+		}
+
+		Course course = new Course("c");
+		Category existing = new Category("existing", 1, false);
+		course.categories.put(existing.id, existing);
+		String before = describe(course);
+		try {
+			new DelimitedFormat(',').read(new StringReader("a,,2,,,true\na,x,1,1,2,\nb,y,1,1,2,\nb,z,-1,1,2,\n"), course);
+			check(false, -1, "bad row accepted");
+		} catch (IOException e) {
+			check(e.getMessage().startsWith("row 4:"), -1, "bad row reported as " + e.getMessage());
+		}
+		check(describe(course).equals(before), -1, "failed import changed the course");
+		System.out.println(String.format("DelimitedFormatTest: %d seeds passed", seeds));
+	}
+
+	protected static Course course(Random random) {
+		Course course = new Course("c");
+		for (int c = random.nextInt(4); c > 0; c -= 1) {
+			// categories with the same name would be merged on import, so each one's is unique
+			Category category = new Category(c + name(random), random.nextInt(4), random.nextBoolean());
+			for (int a = random.nextInt(5); a > 0; a -= 1) {
+				Assignment assignment = new Assignment(name(random), random.nextInt(3), random.nextInt(5), random.nextInt(5));
+				category.assignments.put(assignment.id, assignment);
+			}
+			course.categories.put(category.id, category);
+		}
+		return course;
+	}
+
+	protected static String name(Random random) {
+		return NAMES[random.nextInt(NAMES.length)];
+	}
+
+	// the course's values without ids, in a canonical order; null names are written as empty ones
+	protected static String describe(Course course) {
+		List<String> categories = new ArrayList<String>();
+		for (Category category : course.categories.values()) {
+			List<String> assignments = new ArrayList<String>();
+			for (Assignment assignment : category.assignments.values()) {
+				assignments.add(String.format("[%s %s %s %s]", text(assignment.getName()), assignment.getWeight(), assignment.getEarned(), assignment.getPossible()));
+			}
+			assignments.sort(null);
+			categories.add(String.format("[%s %s %s %s]", text(category.getName()), category.getWeight(), category.getUseWeights(), assignments));
+		}
+		categories.sort(null);
+		return categories.toString();
+	}
+
+	protected static String text(String name) {
+		return name == null ? "" : name;
+	}
+
+	protected static void check(boolean condition, int seed, String what) {
+		if (!condition) {
+			throw new AssertionError(seed < 0 ? what : String.format("seed %d: %s", seed, what));
+		}
+	}
+}